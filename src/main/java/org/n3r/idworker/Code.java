@@ -2,20 +2,32 @@ package org.n3r.idworker;
 
 import org.n3r.idworker.strategy.DefaultRandomCodeStrategy;
 
+/**
+ * The facade of the default {@link CodeGenerator}, which is created at the first use.
+ */
 public class Code {
-    private static RandomCodeStrategy strategy;
+    private static volatile CodeGenerator generator;
 
-    static {
-        RandomCodeStrategy strategy = new DefaultRandomCodeStrategy();
-        strategy.init();
-        configure(strategy);
+    /**
+     * The default code generator.
+     *
+     * @return code generator
+     */
+    public static CodeGenerator generator() {
+        CodeGenerator g = generator;
+        return g != null ? g : createGenerator();
     }
 
-    public static synchronized void configure(RandomCodeStrategy custom) {
-        if (strategy == custom) return;
-        if (strategy != null) strategy.release();
+    private static synchronized CodeGenerator createGenerator() {
+        if (generator == null) {
+            generator = CodeGenerator.builder().randomCodeStrategy(new DefaultRandomCodeStrategy()).build();
+        }
 
-        strategy = custom;
+        return generator;
+    }
+
+    public static void configure(RandomCodeStrategy custom) {
+        generator().configure(custom);
     }
 
     /**
@@ -25,11 +37,7 @@ public class Code {
      *
      * @return unique string code.
      */
-    public static synchronized String next() {
-        long workerId = Id.getWorkerId();
-        int prefix = strategy.prefix();
-        int next = strategy.next();
-
-        return String.format("%d-%03d-%06d", workerId, prefix, next);
+    public static String next() {
+        return generator().next();
     }
 }
@@ -0,0 +1,124 @@
+package org.n3r.idworker;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A random code generator instance, while {@link Code} and {@link DayCode} are the facades of the default instances.
+ * <p>
+ * The code is formatted by the worker id, the prefix and the random code of the {@link RandomCodeStrategy},
+ * and the strategy is initialized lazily at the first use.
+ * <pre>
+ * CodeGenerator generator = CodeGenerator.builder()
+ *         .randomCodeStrategy(new DefaultRandomCodeStrategy().setMinRandomSize(7).setMaxRandomSize(7))
+ *         .format("%d-%03d-%07d")
+ *         .build();
+ * String code = generator.next();
+ * </pre>
+ */
+public class CodeGenerator {
+    private final String format;
+    private final IdGenerator idGenerator;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private RandomCodeStrategy strategy;
+    private boolean inited;
+
+    private CodeGenerator(Builder builder) {
+        this.strategy = builder.strategy;
+        this.format = builder.format;
+        this.idGenerator = builder.idGenerator;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private RandomCodeStrategy strategy;
+        private String format = "%d-%03d-%06d";
+        private IdGenerator idGenerator;
+
+        public Builder randomCodeStrategy(RandomCodeStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * The code format of the worker id, the prefix and the random code, %d-%03d-%06d by default.
+         */
+        public Builder format(String format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * The id generator whose worker id is in the code, the default {@link Id#generator()} by default.
+         */
+        public Builder idGenerator(IdGenerator idGenerator) {
+            this.idGenerator = idGenerator;
+            return this;
+        }
+
+        public CodeGenerator build() {
+            if (strategy == null) throw new IllegalArgumentException("random code strategy is required");
+
+            return new CodeGenerator(this);
+        }
+    }
+
+    /**
+     * Change the random code strategy, which should be initialized already, and the previous one is released.
+     *
+     * @param custom random code strategy
+     */
+    public void configure(RandomCodeStrategy custom) {
+        lock.lock();
+        try {
+            if (strategy == custom) return;
+            if (inited) strategy.release();
+
+            strategy = custom;
+            inited = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Next code. The calls into the strategy are serialized by a {@link ReentrantLock} rather than the monitor,
+     * so the waiting virtual threads are parked without pinning their carriers.
+     *
+     * @return code
+     */
+    public String next() {
+        long workerId = idGenerator != null ? idGenerator.getWorkerId() : Id.getWorkerId();
+        int prefix, code;
+        lock.lock();
+        try {
+            if (!inited) {
+                strategy.init();
+                inited = true;
+            }
+
+            prefix = strategy.prefix();
+            code = strategy.next();
+        } finally {
+            lock.unlock();
+        }
+
+        return String.format(format, workerId, prefix, code);
+    }
+
+    /**
+     * Release the random code strategy.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            if (inited) strategy.release();
+            inited = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
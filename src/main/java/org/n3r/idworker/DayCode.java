@@ -2,18 +2,34 @@ package org.n3r.idworker;
 
 import org.n3r.idworker.strategy.DayPrefixRandomCodeStrategy;
 
+/**
+ * The facade of the default day prefixed {@link CodeGenerator}, which is created at the first use.
+ */
 public class DayCode {
-    static RandomCodeStrategy strategy;
+    private static volatile CodeGenerator generator;
 
-    static {
-        DayPrefixRandomCodeStrategy dayPrefixCodeStrategy = new DayPrefixRandomCodeStrategy("yyMM");
-        dayPrefixCodeStrategy.setMinRandomSize(7);
-        dayPrefixCodeStrategy.setMaxRandomSize(7);
-        strategy = dayPrefixCodeStrategy;
-        strategy.init();
+    /**
+     * The default day prefixed code generator.
+     *
+     * @return code generator
+     */
+    public static CodeGenerator generator() {
+        CodeGenerator g = generator;
+        return g != null ? g : createGenerator();
     }
 
-    public static synchronized String next() {
-        return String.format("%d-%04d-%07d", Id.getWorkerId(), strategy.prefix(), strategy.next());
+    private static synchronized CodeGenerator createGenerator() {
+        if (generator == null) {
+            DayPrefixRandomCodeStrategy dayPrefixCodeStrategy = new DayPrefixRandomCodeStrategy("yyMM");
+            dayPrefixCodeStrategy.setMinRandomSize(7);
+            dayPrefixCodeStrategy.setMaxRandomSize(7);
+            generator = CodeGenerator.builder().randomCodeStrategy(dayPrefixCodeStrategy).format("%d-%04d-%07d").build();
+        }
+
+        return generator;
+    }
+
+    public static String next() {
+        return generator().next();
     }
 }
@@ -0,0 +1,114 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.utils.Utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * An id worker whose epoch is the midnight of the day when the id is generated.
+ * The midnight epoch and the yyMMdd prefix are cached together in an immutable {@link Day}
+ * snapshot, which is only swapped inside {@link #nextId()} when the generating timestamp
+ * crosses the next midnight, so the id and its prefix always belong to the same day.
+ */
+public class DayIdWorker extends IdWorker {
+    private volatile Day day;
+
+    public DayIdWorker(long workerId) {
+        super(workerId);
+        day = new Day(millisGen());
+    }
+
+    /**
+     * The midnight millis of the day of the last generated id.
+     * Called by {@link IdWorker#nextId()} after lastMillis is updated, so the day is rolled here.
+     */
+    @Override
+    public long getEpoch() {
+        Day current = day;
+        if (lastMillis >= current.nextMidnight || lastMillis >= 0 && lastMillis < current.midnight) {
+            current = new Day(lastMillis);
+            day = current;
+        }
+
+        return current.midnight;
+    }
+
+    /**
+     * Next id with the yyMMdd prefix of the day it belongs to.
+     *
+     * @return fixed 21 digits string
+     */
+    public String next() {
+        long id;
+        String yyMMdd;
+        lock.lock();
+        try {
+            id = nextId();
+            yyMMdd = day.yyMMdd;
+        } finally {
+            lock.unlock();
+        }
+
+        return yyMMdd + Utils.padLeft(String.valueOf(id), 15, '0');
+    }
+
+    /**
+     * Next id with the yyMMdd prefix of the day it belongs to, encoded as alphanumeric.
+     *
+     * @return fixed 16 characters string
+     */
+    public String nextShort() {
+        long id;
+        String yyMMdd;
+        lock.lock();
+        try {
+            id = nextId();
+            yyMMdd = day.yyMMdd;
+        } finally {
+            lock.unlock();
+        }
+
+        return yyMMdd + Utils.padLeft(Utils.encode(id), 10, '0');
+    }
+
+    /**
+     * The decoder of the ids, whose timestamps are millis since midnight.
+     *
+     * @return {@link IdDecoder#SID}
+     */
+    @Override
+    public IdDecoder decoder() {
+        return IdDecoder.SID;
+    }
+
+    /**
+     * The yyMMdd of the day of the last generated id.
+     *
+     * @return yyMMdd
+     */
+    public String getDay() {
+        return day.yyMMdd;
+    }
+
+    static final class Day {
+        final long midnight;
+        final long nextMidnight;
+        final String yyMMdd;
+
+        Day(long millis) {
+            Calendar date = Calendar.getInstance();
+            date.setTimeInMillis(millis);
+            date.set(Calendar.HOUR_OF_DAY, 0);
+            date.set(Calendar.MINUTE, 0);
+            date.set(Calendar.SECOND, 0);
+            date.set(Calendar.MILLISECOND, 0);
+            this.midnight = date.getTimeInMillis();
+            this.yyMMdd = new SimpleDateFormat("yyMMdd").format(new Date(midnight));
+
+            date.add(Calendar.DAY_OF_MONTH, 1);
+            this.nextMidnight = date.getTimeInMillis();
+        }
+    }
+}
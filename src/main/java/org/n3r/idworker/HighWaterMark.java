@@ -0,0 +1,23 @@
+package org.n3r.idworker;
+
+/**
+ * The durable high-water mark of the millis used by a worker id, which keeps the ids unique
+ * after a restart with a rolled-back clock. It is implemented by the worker id strategies that keep it,
+ * like {@link org.n3r.idworker.strategy.DefaultWorkerIdStrategy}, and checked by {@link IdWorker#resumeFrom(HighWaterMark)}.
+ */
+public interface HighWaterMark {
+    /**
+     * The persisted mark, which is larger than all the millis used before.
+     *
+     * @return millis, 0 when none
+     */
+    long get();
+
+    /**
+     * Persist a new mark ahead of the millis, which is called again only when the millis reach the returned mark.
+     *
+     * @param millis the millis to be used
+     * @return the new mark, larger than the millis
+     */
+    long advance(long millis);
+}
@@ -1,36 +1,196 @@
 package org.n3r.idworker;
 
 import org.n3r.idworker.strategy.DefaultWorkerIdStrategy;
+import org.n3r.idworker.utils.Props;
+import org.n3r.idworker.utils.Utils;
 
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * The facade of the default {@link IdGenerator}, which is configured by idworker-client.properties
+ * and created at the first use.
+ */
 public class Id {
-    private static WorkerIdStrategy workerIdStrategy;
-    private static IdWorker idWorker;
-    private static IdWorkerInt idWorkerInt;
+    private static volatile IdGenerator generator;
+
+    /**
+     * The default id generator.
+     *
+     * @return id generator
+     */
+    public static IdGenerator generator() {
+        IdGenerator g = generator;
+        return g != null ? g : createGenerator();
+    }
+
+    private static synchronized IdGenerator createGenerator() {
+        if (generator == null) {
+            generator = IdGenerator.builder()
+                    .properties(Props.tryProperties("idworker-client.properties", Utils.DOT_IDWORKERS))
+                    .workerIdStrategy(DefaultWorkerIdStrategy.instance)
+                    .build();
+        }
+
+        return generator;
+    }
 
-    static {
-        configure(DefaultWorkerIdStrategy.instance);
+    /**
+     * Switch {@link #next()} to the segment mode, which leases id segments from the idworker server,
+     * or back to the worker id mode with null.
+     *
+     * @param custom segment id worker, null for the worker id mode
+     */
+    public static void configure(SegmentIdWorker custom) {
+        generator().configure(custom);
     }
 
-    public static synchronized void configure(WorkerIdStrategy custom) {
-        if (workerIdStrategy == custom) return;
+    public static SegmentIdWorker getSegmentIdWorker() {
+        return generator().getSegmentIdWorker();
+    }
 
-        if (workerIdStrategy != null) workerIdStrategy.release();
-        workerIdStrategy = custom;
-        workerIdStrategy.initialize();
-        long availableWorkerId = workerIdStrategy.availableWorkerId();
-        idWorker = new IdWorker(availableWorkerId);
-        idWorkerInt = new IdWorkerInt(availableWorkerId & (~(-1L << 5L)));
+    public static void configure(WorkerIdStrategy custom) {
+        generator().configure(custom);
     }
 
     public static long next() {
-        return idWorker.nextId();
+        return generator().next();
+    }
+
+    /**
+     * Fill the array with next ids, reserved in one batch.
+     *
+     * @param dst the array to fill
+     */
+    public static void nextIds(long[] dst) {
+        generator().nextIds(dst);
+    }
+
+    /**
+     * An infinite id stream pulling ids in chunks of {@link IdStream#DEFAULT_CHUNK_SIZE}.
+     *
+     * @return id stream
+     */
+    public static IdStream stream() {
+        return generator().stream(IdStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * A publisher emitting id chunks on demand.
+     *
+     * @param chunkSize ids in one chunk
+     * @return id publisher
+     */
+    public static IdPublisher publisher(int chunkSize) {
+        return generator().publisher(chunkSize);
+    }
+
+    /**
+     * Next 128-bit time ordered id in the UUIDv7 layout, as a sortable replacement of {@link UUID#randomUUID()}.
+     *
+     * @return uuid
+     * @see Id128Worker
+     */
+    public static UUID nextUUID() {
+        return generator().nextUUID();
+    }
+
+    /**
+     * Next 128-bit time ordered id as the 26 chars ULID string.
+     *
+     * @return ulid
+     * @see Id128Worker
+     */
+    public static String nextUlid() {
+        return generator().nextUlid();
+    }
+
+    /**
+     * Fill the array with next 128-bit ids as the pairs of the most and the least significant 64 bits.
+     *
+     * @param pairs the array to fill, whose length should be even
+     */
+    public static void next128s(long[] pairs) {
+        generator().next128s(pairs);
+    }
+
+    /**
+     * The id generator of the namespace, which has its own sequence.
+     *
+     * @param name namespace name, like orders
+     * @return namespace id generator, cached for the same name
+     * @see IdNamespace
+     */
+    public static IdNamespace of(String name) {
+        return generator().of(name);
     }
 
     public static int nextInt() {
-        return idWorkerInt.nextIdInt();
+        return generator().nextInt();
+    }
+
+    /**
+     * Next 31-bit positive int id, which is recycled every window.
+     *
+     * @return positive int id
+     * @see IdWorkerInt31
+     */
+    public static int nextInt31() {
+        return generator().nextInt31();
+    }
+
+    /**
+     * Fill the array with next 31-bit positive int ids.
+     *
+     * @param dst the array to fill
+     * @see IdWorkerInt31
+     */
+    public static void nextInts(int[] dst) {
+        generator().nextInts(dst);
+    }
+
+    /**
+     * The decoder of the ids generated by {@link #next()}.
+     *
+     * @return id decoder
+     */
+    public static IdDecoder getDecoder() {
+        return generator().getDecoder();
+    }
+
+    /**
+     * The smallest possible id generated at or after the time, for id range scans.
+     *
+     * @param from start time of the window, inclusive
+     * @return smallest id
+     */
+    public static long lowerBound(Date from) {
+        return generator().lowerBound(from);
+    }
+
+    public static long lowerBound(long fromMillis) {
+        return generator().lowerBound(fromMillis);
+    }
+
+    /**
+     * The largest possible id generated at or before the time, for id range scans.
+     *
+     * @param to end time of the window, inclusive
+     * @return largest id
+     */
+    public static long upperBound(Date to) {
+        return generator().upperBound(to);
+    }
+
+    public static long upperBound(long toMillis) {
+        return generator().upperBound(toMillis);
+    }
+
+    public static IdLayout getLayout() {
+        return generator().getLayout();
     }
 
     public static long getWorkerId() {
-        return idWorker.getWorkerId();
+        return generator().getWorkerId();
     }
 }
@@ -0,0 +1,109 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.utils.Crockford;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A 128-bit time ordered id worker in the UUIDv7 layout:
+ * <pre>
+ * 48 bits unix millis | 4 bits version 7 | 12 bits sequence | 2 bits variant | 16 bits worker id | 46 bits random
+ * </pre>
+ * The millis and the sequence come from {@link IdWorker}, so the ids of a worker are strictly increasing,
+ * and the worker id plus the random bits keep the ids of different workers apart.
+ * The ULID strings are the Crockford base32 of the same 128 bits, and sort as the ids do.
+ */
+public class Id128Worker extends IdWorker {
+    public static final IdLayout LAYOUT = new IdLayout(48, 0, 12, 1, 0);
+
+    private static final long VERSION = 0x7L << 12;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = (1L << 46) - 1;
+
+    private final long node;
+
+    public Id128Worker(long workerId) {
+        super(0, LAYOUT);
+        if (workerId < 0 || workerId > 0xFFFFL)
+            throw new IllegalArgumentException("worker id " + workerId + " is out of the 16 bits node");
+
+        this.node = workerId;
+    }
+
+    /**
+     * Next id into the array as the most significant and the least significant 64 bits.
+     *
+     * @param dst   the array to write
+     * @param index the index of the most significant 64 bits, and the least ones follow
+     */
+    public void next128(long[] dst, int index) {
+        dst[index] = msbOf(nextId());
+        dst[index + 1] = nextLsb();
+    }
+
+    /**
+     * Fill the array with next ids as the pairs of the most and the least significant 64 bits,
+     * in one lock acquisition.
+     *
+     * @param pairs the array to fill, whose length should be even
+     */
+    public void next128s(long[] pairs) {
+        if ((pairs.length & 1) != 0) throw new IllegalArgumentException("pairs length should be even");
+
+        lock.lock();
+        try {
+            for (int i = 0; i < pairs.length; i += 2) next128(pairs, i);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public UUID nextUUID() {
+        long[] pair = new long[2];
+        next128(pair, 0);
+        return new UUID(pair[0], pair[1]);
+    }
+
+    public String nextUlid() {
+        char[] chars = new char[Crockford.ULID_LENGTH];
+        nextUlid(chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Write the next ULID into the chars without allocation.
+     *
+     * @param dst    the chars to write 26 chars
+     * @param offset the first index to write
+     */
+    public void nextUlid(char[] dst, int offset) {
+        Crockford.encode(msbOf(nextId()), nextLsb(), dst, offset);
+    }
+
+    /**
+     * Insert the version bits between the millis and the sequence.
+     */
+    private static long msbOf(long id) {
+        return ((id >>> 12) << 16) | VERSION | (id & 0xFFFL);
+    }
+
+    private long nextLsb() {
+        return VARIANT | (node << 46) | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+    }
+
+    /**
+     * The unix millis of the id.
+     *
+     * @param msb the most significant 64 bits
+     * @return unix millis
+     */
+    public static long timestampOf(long msb) {
+        return msb >>> 16;
+    }
+
+    @Override
+    public long getWorkerId() {
+        return node;
+    }
+}
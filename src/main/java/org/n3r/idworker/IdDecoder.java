@@ -0,0 +1,214 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.utils.Utils;
+
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decode the timestamp, worker id and sequence from the ids by the bit layout, without allocation.
+ * <p>
+ * The int ids from {@link IdWorkerInt} and {@link IdWorkerInt31} only keep the timestamp within a window,
+ * so their timestamps are resolved by {@link #timestampOf(long, long)} with a reference time.
+ * The Sid strings are decoded by the static sid* methods.
+ */
+public class IdDecoder {
+    /**
+     * Decoder of the ids embedded in {@link Sid} strings, whose timestamps are millis since midnight.
+     */
+    public static final IdDecoder SID = new IdDecoder(new IdLayout(42, 10, 11, 1, 0));
+
+    private final IdLayout layout;
+    private final long epoch;
+    private final long timeUnit;
+    private final int workerIdShift;
+    private final int timestampLeftShift;
+    private final long maxWorkerId;
+    private final long sequenceMask;
+    private final long windowTicks;
+
+    public IdDecoder(IdLayout layout) {
+        this(layout, 0);
+    }
+
+    /**
+     * Create a decoder for ids whose timestamps are recycled every window.
+     *
+     * @param layout      bit layout
+     * @param windowTicks time units of the window, 0 for no window
+     */
+    public IdDecoder(IdLayout layout, long windowTicks) {
+        this.layout = layout;
+        this.epoch = layout.getEpoch();
+        this.timeUnit = layout.getTimeUnit();
+        this.workerIdShift = layout.getWorkerIdShift();
+        this.timestampLeftShift = layout.getTimestampLeftShift();
+        this.maxWorkerId = layout.getMaxWorkerId();
+        this.sequenceMask = layout.getSequenceMask();
+        this.windowTicks = windowTicks;
+    }
+
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * The millis since 1970 when the id was generated.
+     *
+     * @param id id
+     * @return timestamp millis
+     */
+    public long timestampOf(long id) {
+        return epoch + (id >>> timestampLeftShift) * timeUnit;
+    }
+
+    /**
+     * The millis since 1970 when the id was generated, for ids whose timestamps are recycled every window.
+     * The latest time not after the reference is used.
+     *
+     * @param id              id
+     * @param referenceMillis reference millis, like now
+     * @return timestamp millis
+     */
+    public long timestampOf(long id, long referenceMillis) {
+        if (windowTicks <= 0) return timestampOf(id);
+
+        long referenceTick = (referenceMillis - epoch) / timeUnit;
+        long tick = referenceTick - referenceTick % windowTicks + (id >>> timestampLeftShift);
+        if (tick > referenceTick) tick -= windowTicks;
+
+        return epoch + tick * timeUnit;
+    }
+
+    public long workerIdOf(long id) {
+        return (id >>> workerIdShift) & maxWorkerId;
+    }
+
+    public long sequenceOf(long id) {
+        return id & sequenceMask;
+    }
+
+    /**
+     * Decode the ids into the parallel arrays, any of which can be null to skip.
+     *
+     * @param ids        ids
+     * @param timestamps timestamps millis
+     * @param workerIds  worker ids
+     * @param sequences  sequences
+     */
+    public void decode(long[] ids, long[] timestamps, int[] workerIds, int[] sequences) {
+        checkLength(ids, timestamps == null ? ids.length : timestamps.length);
+        checkLength(ids, workerIds == null ? ids.length : workerIds.length);
+        checkLength(ids, sequences == null ? ids.length : sequences.length);
+
+        for (int i = 0; i < ids.length; ++i) {
+            long id = ids[i];
+            if (timestamps != null) timestamps[i] = timestampOf(id);
+            if (workerIds != null) workerIds[i] = (int) workerIdOf(id);
+            if (sequences != null) sequences[i] = (int) sequenceOf(id);
+        }
+    }
+
+    private static void checkLength(long[] ids, int length) {
+        if (length < ids.length)
+            throw new IllegalArgumentException("decoded array length " + length + " is less than " + ids.length);
+    }
+
+    /**
+     * The min possible id generated at the millis.
+     *
+     * @param millis millis since 1970
+     * @return min id, 0 when before epoch
+     */
+    public long minIdAt(long millis) {
+        if (millis < epoch) return 0;
+
+        long tick = (millis - epoch) / timeUnit;
+        if (tick > layout.getMaxTimestamp()) return Long.MAX_VALUE;
+
+        return tick << timestampLeftShift;
+    }
+
+    /**
+     * The max possible id generated at the millis.
+     *
+     * @param millis millis since 1970
+     * @return max id, -1 when before epoch
+     */
+    public long maxIdAt(long millis) {
+        if (millis < epoch) return -1;
+
+        long tick = (millis - epoch) / timeUnit;
+        if (tick > layout.getMaxTimestamp()) return Long.MAX_VALUE;
+
+        return (tick << timestampLeftShift) | ~(-1L << timestampLeftShift);
+    }
+
+    /**
+     * The id embedded in the Sid string, created by {@link Sid#next()} or {@link Sid#nextShort()}.
+     * The 20 digits Sid of the legacy versions, whose id was padded to 14 digits, is accepted too.
+     *
+     * @param sid Sid string
+     * @return embedded id
+     */
+    public static long sidIdOf(CharSequence sid) {
+        int length = sid.length();
+        if (length == 21 || length == 20) return parseDecimal(sid, 6, length);
+        if (length == 16) return Utils.decode(sid, 6, length);
+
+        throw new IllegalArgumentException("bad sid " + sid);
+    }
+
+    public static long sidTimestampOf(CharSequence sid) {
+        return midnightOf(sid) + SID.timestampOf(sidIdOf(sid));
+    }
+
+    public static long sidWorkerIdOf(CharSequence sid) {
+        return SID.workerIdOf(sidIdOf(sid));
+    }
+
+    public static long sidSequenceOf(CharSequence sid) {
+        return SID.sequenceOf(sidIdOf(sid));
+    }
+
+    private static final int MIDNIGHT_SLOTS = 1024;
+    private static final int MIDNIGHT_BITS = 42;
+    /**
+     * The direct mapped cache of the midnights, each slot packing the day index + 1 above the midnight millis,
+     * so a hit is a single read without allocation.
+     */
+    private static final AtomicLongArray midnights = new AtomicLongArray(MIDNIGHT_SLOTS);
+
+    /**
+     * The midnight millis of the yyMMdd prefix of the Sid string.
+     *
+     * @param sid Sid string
+     * @return midnight millis
+     */
+    public static long midnightOf(CharSequence sid) {
+        int yy = (int) parseDecimal(sid, 0, 2), mm = (int) parseDecimal(sid, 2, 4), dd = (int) parseDecimal(sid, 4, 6);
+        long day = yy * 372 + (mm - 1) * 31 + dd; // never 0 as the empty slot
+        int slot = (int) (day & (MIDNIGHT_SLOTS - 1));
+        long cached = midnights.get(slot);
+        if (cached >>> MIDNIGHT_BITS == day) return cached & ~(-1L << MIDNIGHT_BITS);
+
+        Calendar date = Calendar.getInstance();
+        date.clear();
+        date.set(2000 + yy, mm - 1, dd);
+        long midnight = date.getTimeInMillis();
+        midnights.set(slot, day << MIDNIGHT_BITS | midnight);
+
+        return midnight;
+    }
+
+    private static long parseDecimal(CharSequence s, int start, int end) {
+        long num = 0;
+        for (int i = start; i < end; ++i) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') throw new IllegalArgumentException("bad digit " + ch + " at " + i);
+
+            num = num * 10 + (ch - '0');
+        }
+        return num;
+    }
+}
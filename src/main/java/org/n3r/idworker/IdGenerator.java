@@ -0,0 +1,507 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.metrics.IdMetrics;
+import org.n3r.idworker.strategy.DefaultWorkerIdStrategy;
+import org.n3r.idworker.strategy.HttpSegmentFetcher;
+import org.n3r.idworker.utils.ServerList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An id generator instance, which can be created as many as needed with different configurations,
+ * while {@link Id} and {@link Sid} are the facades of the default instance.
+ * <p>
+ * The worker id strategy is initialized and the id workers are created lazily at the first use,
+ * so creating a generator does no file or network I/O.
+ * <pre>
+ * IdGenerator generator = IdGenerator.builder()
+ *         .workerIdStrategy(new LeaseWorkerIdStrategy(coordinator, 30000))
+ *         .layout(IdLayout.WIDE_WORKER)
+ *         .build();
+ * long id = generator.next();
+ * </pre>
+ */
+public class IdGenerator {
+    private final IdLayout layout;
+    private final IdLayout int31Layout;
+    private final long int31WindowSeconds;
+    private final long int31BorrowSeconds;
+    private final Properties props;
+    private final ConcurrentMap<String, IdNamespace> namespaces = new ConcurrentHashMap<String, IdNamespace>();
+
+    private volatile WorkerIdStrategy workerIdStrategy;
+    private volatile Workers workers;
+    private volatile SegmentIdWorker segmentIdWorker;
+
+    private final Object resumeLock = new Object();
+    private long resumedWorkerId = -1L;
+    private long resumeFloor;
+
+    Logger logger = LoggerFactory.getLogger(IdGenerator.class);
+
+    private IdGenerator(Builder builder) {
+        this.workerIdStrategy = builder.workerIdStrategy;
+        this.layout = builder.layout;
+        this.int31Layout = builder.int31Layout;
+        this.int31WindowSeconds = builder.int31WindowSeconds;
+        this.int31BorrowSeconds = builder.int31BorrowSeconds;
+        this.props = builder.props;
+        this.segmentIdWorker = builder.segmentIdWorker;
+        if (segmentIdWorker != null) IdMetrics.register(metricsName(segmentIdWorker), segmentIdWorker);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private WorkerIdStrategy workerIdStrategy;
+        private IdLayout layout = IdLayout.DEFAULT;
+        private IdLayout int31Layout = IdWorkerInt31.DEFAULT_LAYOUT;
+        private long int31WindowSeconds;
+        private long int31BorrowSeconds = IdWorkerInt31.DEFAULT_BORROW_SECONDS;
+        private Properties props = new Properties();
+        private SegmentIdWorker segmentIdWorker;
+
+        /**
+         * The worker id strategy, {@link DefaultWorkerIdStrategy#instance} by default.
+         */
+        public Builder workerIdStrategy(WorkerIdStrategy workerIdStrategy) {
+            this.workerIdStrategy = workerIdStrategy;
+            return this;
+        }
+
+        public Builder layout(IdLayout layout) {
+            this.layout = layout;
+            return this;
+        }
+
+        public Builder int31Layout(IdLayout int31Layout) {
+            this.int31Layout = int31Layout;
+            return this;
+        }
+
+        public Builder int31WindowSeconds(long int31WindowSeconds) {
+            this.int31WindowSeconds = int31WindowSeconds;
+            return this;
+        }
+
+        public Builder int31BorrowSeconds(long int31BorrowSeconds) {
+            this.int31BorrowSeconds = int31BorrowSeconds;
+            return this;
+        }
+
+        /**
+         * Take the leased id segments for {@link IdGenerator#next()}.
+         */
+        public Builder segmentIdWorker(SegmentIdWorker segmentIdWorker) {
+            this.segmentIdWorker = segmentIdWorker;
+            return this;
+        }
+
+        /**
+         * Configure by the properties like idworker-client.properties: layout, int31.layout,
+         * int31.window.seconds, int31.borrow.seconds, ns.&lt;name&gt;.layout,
+         * and mode=segment with segment.name, segment.size, segment.prefetch.ratio, server.address and server.probe.millis.
+         */
+        public Builder properties(Properties props) {
+            this.props = props;
+            this.layout = IdLayout.fromProperties(props, "layout", layout);
+            this.int31Layout = IdLayout.fromProperties(props, "int31.layout", int31Layout);
+            this.int31WindowSeconds = Long.parseLong(props.getProperty("int31.window.seconds", "" + int31WindowSeconds));
+            this.int31BorrowSeconds = Long.parseLong(props.getProperty("int31.borrow.seconds", "" + int31BorrowSeconds));
+            if ("segment".equals(props.getProperty("mode"))) {
+                this.segmentIdWorker = new SegmentIdWorker(props.getProperty("segment.name", "default"),
+                        Integer.parseInt(props.getProperty("segment.size", "10000")),
+                        Double.parseDouble(props.getProperty("segment.prefetch.ratio", "0.2")),
+                        new HttpSegmentFetcher(new ServerList(props.getProperty("server.address", "http://id.worker.server:18001"),
+                                Long.parseLong(props.getProperty("server.probe.millis", "5000").trim()))));
+            }
+            return this;
+        }
+
+        public IdGenerator build() {
+            if (workerIdStrategy == null) workerIdStrategy = DefaultWorkerIdStrategy.instance;
+
+            return new IdGenerator(this);
+        }
+    }
+
+    /**
+     * Change the worker id strategy, and the previous one is released.
+     *
+     * @param custom worker id strategy
+     */
+    public synchronized void configure(WorkerIdStrategy custom) {
+        if (workerIdStrategy == custom && workers != null) return;
+
+        if (workerIdStrategy != custom) workerIdStrategy.release();
+        workerIdStrategy = custom;
+        dropWorkers();
+        workers();
+    }
+
+    /**
+     * Switch {@link #next()} to the segment mode, or back to the worker id mode with null.
+     *
+     * @param custom segment id worker, null for the worker id mode
+     */
+    public synchronized void configure(SegmentIdWorker custom) {
+        if (segmentIdWorker == custom) return;
+
+        if (segmentIdWorker != null) IdMetrics.unregister(metricsName(segmentIdWorker), segmentIdWorker);
+        if (custom != null) IdMetrics.register(metricsName(custom), custom);
+        segmentIdWorker = custom;
+    }
+
+    private static String metricsName(SegmentIdWorker segment) {
+        return "segment." + segment.getName();
+    }
+
+    public SegmentIdWorker getSegmentIdWorker() {
+        return segmentIdWorker;
+    }
+
+    private Workers workers() {
+        Workers w = workers;
+        return w != null && isCurrent(w.workerId) ? w : createWorkers();
+    }
+
+    /**
+     * Whether the worker id is still the one of the worker id strategy, which may switch it or take it away.
+     */
+    boolean isCurrent(long workerId) {
+        return workerIdStrategy.availableWorkerId() == workerId;
+    }
+
+    /**
+     * Create the workers at the first use, or recreate them with the namespaces when the worker id is switched.
+     *
+     * @throws IllegalStateException when the worker id strategy has no worker id, so no ids are generated
+     */
+    private synchronized Workers createWorkers() {
+        if (workers == null) workerIdStrategy.initialize();
+
+        long workerId = workerIdStrategy.availableWorkerId();
+        if (workerId < 0)
+            throw new IllegalStateException("no worker id is available from " + workerIdStrategy.getClass().getSimpleName()
+                    + ", the ids are fenced until it is");
+
+        if (workers == null || workers.workerId != workerId) {
+            if (workers != null) dropWorkers();
+            workers = new Workers(workerId);
+            workers.register();
+        }
+
+        return workers;
+    }
+
+    /**
+     * Drop the workers and the workers of the namespaces, whose ids are kept in {@link IdMetrics}.
+     */
+    private void dropWorkers() {
+        if (workers != null) workers.unregister();
+        workers = null;
+        for (IdNamespace namespace : namespaces.values()) namespace.reset();
+    }
+
+    public long next() {
+        SegmentIdWorker segment = segmentIdWorker;
+        return segment != null ? segment.nextId() : workers().idWorker.nextId();
+    }
+
+    /**
+     * Fill the array with next ids, reserved in one batch in the worker id mode.
+     *
+     * @param dst the array to fill
+     */
+    public void nextIds(long[] dst) {
+        SegmentIdWorker segment = segmentIdWorker;
+        if (segment == null) {
+            workers().idWorker.nextIds(dst);
+            return;
+        }
+
+        for (int i = 0; i < dst.length; ++i) dst[i] = segment.nextId();
+    }
+
+    /**
+     * An infinite id stream pulling ids in chunks.
+     *
+     * @param chunkSize ids reserved in one chunk
+     * @return id stream
+     */
+    public IdStream stream(int chunkSize) {
+        return new IdStream(this, chunkSize);
+    }
+
+    /**
+     * A publisher emitting id chunks on demand.
+     *
+     * @param chunkSize ids in one chunk
+     * @return id publisher
+     */
+    public IdPublisher publisher(int chunkSize) {
+        return new IdPublisher(this, chunkSize);
+    }
+
+    /**
+     * Next legacy int id, whose worker id is masked into 5 bits like before, so the worker ids with the same
+     * low 5 bits may generate the same ids. Use {@link #nextInt31()} instead.
+     *
+     * @return positive int id
+     * @see IdWorkerInt
+     */
+    public int nextInt() {
+        return workers().idWorkerInt.nextIdInt();
+    }
+
+    /**
+     * Next 31-bit positive int id, which is recycled every window.
+     *
+     * @return positive int id
+     * @see IdWorkerInt31
+     */
+    public int nextInt31() {
+        return workers().idWorkerInt31.nextIdInt();
+    }
+
+    /**
+     * Fill the array with next 31-bit positive int ids.
+     *
+     * @param dst the array to fill
+     * @see IdWorkerInt31
+     */
+    public void nextInts(int[] dst) {
+        workers().idWorkerInt31.nextInts(dst);
+    }
+
+    /**
+     * Next fixed 21 digits Sid, see {@link Sid#next()}.
+     *
+     * @return 21 digits
+     */
+    public String nextSid() {
+        return workers().dayIdWorker().next();
+    }
+
+    /**
+     * Next fixed 16 letters and digits Sid, see {@link Sid#nextShort()}.
+     *
+     * @return 16 letters and digits
+     */
+    public String nextShortSid() {
+        return workers().dayIdWorker().nextShort();
+    }
+
+    /**
+     * Next 128-bit time ordered id in the UUIDv7 layout.
+     *
+     * @return uuid
+     * @see Id128Worker
+     */
+    public UUID nextUUID() {
+        return workers().id128Worker.nextUUID();
+    }
+
+    /**
+     * Next 128-bit time ordered id as the 26 chars ULID string.
+     *
+     * @return ulid
+     * @see Id128Worker
+     */
+    public String nextUlid() {
+        return workers().id128Worker.nextUlid();
+    }
+
+    /**
+     * Fill the array with next 128-bit ids as the pairs of the most and the least significant 64 bits.
+     *
+     * @param pairs the array to fill, whose length should be even
+     * @see Id128Worker
+     */
+    public void next128s(long[] pairs) {
+        workers().id128Worker.next128s(pairs);
+    }
+
+    /**
+     * The id generator of the namespace, which has its own sequence.
+     *
+     * @param name namespace name, like orders
+     * @return namespace id generator, cached for the same name
+     * @see IdNamespace
+     */
+    public IdNamespace of(String name) {
+        IdNamespace namespace = namespaces.get(name);
+        if (namespace != null) return namespace;
+
+        namespace = new IdNamespace(this, name, IdLayout.fromProperties(props, "ns." + name + ".layout", layout));
+        IdNamespace existing = namespaces.putIfAbsent(name, namespace);
+        return existing != null ? existing : namespace;
+    }
+
+    /**
+     * The decoder of the ids generated by {@link #next()}.
+     *
+     * @return id decoder
+     */
+    public IdDecoder getDecoder() {
+        return workers().decoder;
+    }
+
+    /**
+     * The smallest possible id generated at or after the time, for id range scans.
+     *
+     * @param from start time of the window, inclusive
+     * @return smallest id
+     */
+    public long lowerBound(Date from) {
+        return lowerBound(from.getTime());
+    }
+
+    public long lowerBound(long fromMillis) {
+        return getDecoder().minIdAt(fromMillis);
+    }
+
+    /**
+     * The largest possible id generated at or before the time, for id range scans.
+     *
+     * @param to end time of the window, inclusive
+     * @return largest id
+     */
+    public long upperBound(Date to) {
+        return upperBound(to.getTime());
+    }
+
+    public long upperBound(long toMillis) {
+        return getDecoder().maxIdAt(toMillis);
+    }
+
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    public long getWorkerId() {
+        return workers().idWorker.getWorkerId();
+    }
+
+    /**
+     * Release the worker id strategy.
+     */
+    public synchronized void release() {
+        workerIdStrategy.release();
+        dropWorkers();
+    }
+
+    /**
+     * Resume the id worker from the high-water mark of the worker id strategy, if it keeps one.
+     * Only the first worker of a worker id reads and waits for the mark persisted by the previous processes.
+     * The later workers, like the namespaces and the workers recreated by {@link #configure(WorkerIdStrategy)},
+     * start after that mark and the current millis without waiting for the mark advanced by this process,
+     * because this process uses no millis ahead of the clock, except the borrowed seconds of {@link IdWorkerInt31}.
+     */
+    void resume(IdWorker worker) {
+        resume(worker, worker.getWorkerId());
+    }
+
+    /**
+     * Resume the id worker of the worker id, which is masked into the ids of the legacy int worker.
+     */
+    private void resume(IdWorker worker, long workerId) {
+        if (!(workerIdStrategy instanceof HighWaterMark)) return;
+
+        HighWaterMark mark = (HighWaterMark) workerIdStrategy;
+        synchronized (resumeLock) {
+            if (workerId != resumedWorkerId) {
+                resumeFloor = mark.get();
+                worker.resumeFrom(mark);
+                resumedWorkerId = workerId;
+            } else {
+                worker.resumeFrom(mark, Math.max(resumeFloor, System.currentTimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * The id workers of one worker id, replaced together when the worker id changes.
+     * The legacy int worker masks the worker id into its 5 bits with a warning, the int31 worker fits
+     * the worker id by a narrower window, and the Sid worker is left null when the worker id doesn't fit it,
+     * and fails at its use.
+     */
+    private final class Workers {
+        final long workerId;
+        final IdWorker idWorker;
+        final IdDecoder decoder;
+        final IdWorkerInt idWorkerInt;
+        final IdWorkerInt31 idWorkerInt31;
+        final DayIdWorker dayIdWorker;
+        final Id128Worker id128Worker;
+
+        Workers(long workerId) {
+            this.workerId = workerId;
+            idWorker = new IdWorker(workerId, layout);
+            decoder = idWorker.decoder();
+            idWorkerInt = new IdWorkerInt(workerId & IdWorkerInt.LAYOUT.getMaxWorkerId());
+            if (!fits(IdWorkerInt.LAYOUT))
+                logger.warn("worker id {} is masked into {} for the legacy int ids, which may be duplicated " +
+                        "across the workers, use nextInt31 instead", workerId, idWorkerInt.getWorkerId());
+            IdLayout fitted = IdWorkerInt31.layoutFor(int31Layout, workerId);
+            if (fitted != int31Layout) logger.info("int31 layout for worker id {} is {}", workerId, fitted);
+            idWorkerInt31 = new IdWorkerInt31(workerId, fitted,
+                    fits(fitted, int31WindowSeconds) ? int31WindowSeconds : 0, int31BorrowSeconds);
+            dayIdWorker = fits(IdDecoder.SID.getLayout()) ? new DayIdWorker(workerId) : null;
+            id128Worker = new Id128Worker(workerId);
+            resume(idWorker);
+            resume(id128Worker);
+            resume(idWorkerInt, workerId);
+            resume(idWorkerInt31);
+            if (dayIdWorker != null) resume(dayIdWorker);
+        }
+
+        /**
+         * Count the ids of the workers in {@link IdMetrics} by their generator names.
+         */
+        void register() {
+            IdMetrics.register("IdWorker", idWorker);
+            IdMetrics.register("IdWorkerInt", idWorkerInt);
+            IdMetrics.register("IdWorkerInt31", idWorkerInt31);
+            if (dayIdWorker != null) IdMetrics.register("DayIdWorker", dayIdWorker);
+            IdMetrics.register("Id128Worker", id128Worker);
+        }
+
+        void unregister() {
+            IdMetrics.unregister("IdWorker", idWorker);
+            IdMetrics.unregister("IdWorkerInt", idWorkerInt);
+            IdMetrics.unregister("IdWorkerInt31", idWorkerInt31);
+            if (dayIdWorker != null) IdMetrics.unregister("DayIdWorker", dayIdWorker);
+            IdMetrics.unregister("Id128Worker", id128Worker);
+        }
+
+        boolean fits(IdLayout narrow) {
+            return workerId <= narrow.getMaxWorkerId();
+        }
+
+        /**
+         * Whether the configured window fits the timestamp bits of the fitted int31 layout, or the full range is used.
+         */
+        boolean fits(IdLayout int31, long windowSeconds) {
+            return windowSeconds * 1000L / int31.getTimeUnit() <= int31.getMaxTimestamp() + 1;
+        }
+
+        DayIdWorker dayIdWorker() {
+            if (dayIdWorker == null) throw unfit(IdDecoder.SID.getLayout(), "Sid");
+            return dayIdWorker;
+        }
+
+        IllegalStateException unfit(IdLayout narrow, String name) {
+            return new IllegalStateException("worker id " + workerId + " doesn't fit the "
+                    + narrow.getWorkerIdBits() + " worker id bits of " + name);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.n3r.idworker;
+
+import java.util.Properties;
+
+/**
+ * Bit layout of the ids generated by {@link IdWorker}: timestamp | worker id | sequence.
+ * The timestamp is counted in time units (1ms or 10ms typically) since the epoch.
+ * A layout is validated when constructed, and exposes its throughput cap and lifetime,
+ * so high-volume nodes can trade worker id bits for sequence bits.
+ */
+public class IdLayout {
+    public static final long DEFAULT_EPOCH = 1387886498127L; // 2013-12-24 20:01:38.127
+
+    /**
+     * 42 bits of millis, 1024 workers, 2048 ids per millis. The layout used by default.
+     */
+    public static final IdLayout DEFAULT = new IdLayout(42, 10, 11, 1, DEFAULT_EPOCH);
+    /**
+     * 41 bits of millis, 4096 workers, 1024 ids per millis.
+     */
+    public static final IdLayout WIDE_WORKER = new IdLayout(41, 12, 10, 1, DEFAULT_EPOCH);
+    /**
+     * 39 bits of 10 millis, 8192 workers, 2048 ids per 10 millis.
+     */
+    public static final IdLayout WIDE_WORKER_10MS = new IdLayout(39, 13, 11, 10, DEFAULT_EPOCH);
+    /**
+     * 41 bits of millis, 256 workers, 16384 ids per millis.
+     */
+    public static final IdLayout HIGH_SEQUENCE = new IdLayout(41, 8, 14, 1, DEFAULT_EPOCH);
+
+    private final int timestampBits;
+    private final int workerIdBits;
+    private final int sequenceBits;
+    private final long timeUnit;
+    private final long epoch;
+
+    private final long maxTimestamp;
+    private final long maxWorkerId;
+    private final long sequenceMask;
+
+    /**
+     * Create a layout.
+     *
+     * @param timestampBits bits of the timestamp in time units since epoch
+     * @param workerIdBits  bits of the worker id
+     * @param sequenceBits  bits of the sequence within one time unit
+     * @param timeUnit      millis of one time unit, like 1 or 10
+     * @param epoch         the epoch millis
+     * @throws IllegalArgumentException when the layout is invalid
+     */
+    public IdLayout(int timestampBits, int workerIdBits, int sequenceBits, long timeUnit, long epoch) {
+        if (timestampBits < 1) throw new IllegalArgumentException("timestamp bits should be positive");
+        if (workerIdBits < 0) throw new IllegalArgumentException("worker id bits can't be negative");
+        if (sequenceBits < 1) throw new IllegalArgumentException("sequence bits should be positive");
+        if (timestampBits + workerIdBits + sequenceBits > 63)
+            throw new IllegalArgumentException("total bits of " + timestampBits + "/" + workerIdBits
+                    + "/" + sequenceBits + " are greater than 63");
+        if (timeUnit < 1) throw new IllegalArgumentException("time unit should be positive");
+        if (epoch < 0) throw new IllegalArgumentException("epoch can't be negative");
+
+        this.timestampBits = timestampBits;
+        this.workerIdBits = workerIdBits;
+        this.sequenceBits = sequenceBits;
+        this.timeUnit = timeUnit;
+        this.epoch = epoch;
+
+        this.maxTimestamp = -1L ^ (-1L << timestampBits);
+        this.maxWorkerId = -1L ^ (-1L << workerIdBits);
+        this.sequenceMask = -1L ^ (-1L << sequenceBits);
+    }
+
+    /**
+     * Find the preset layout by name, case insensitive, like default, wide_worker, wide_worker_10ms, high_sequence.
+     *
+     * @param name preset name
+     * @return preset layout
+     * @throws IllegalArgumentException when no preset found
+     */
+    public static IdLayout preset(String name) {
+        String upper = name.trim().toUpperCase();
+        if ("DEFAULT".equals(upper)) return DEFAULT;
+        if ("WIDE_WORKER".equals(upper)) return WIDE_WORKER;
+        if ("WIDE_WORKER_10MS".equals(upper)) return WIDE_WORKER_10MS;
+        if ("HIGH_SEQUENCE".equals(upper)) return HIGH_SEQUENCE;
+
+        throw new IllegalArgumentException("unknown id layout " + name);
+    }
+
+    /**
+     * Load layout from properties like:
+     * <pre>
+     * layout=wide_worker
+     * layout.timestamp.bits=41
+     * layout.worker.bits=12
+     * layout.sequence.bits=10
+     * layout.time.unit=1
+     * layout.epoch=1387886498127
+     * </pre>
+     * The preset is used as the base and the bits items override it.
+     *
+     * @param props         properties
+     * @param key           the key of layout, like layout
+     * @param defaultLayout the layout to use when the preset is not set
+     * @return layout
+     */
+    public static IdLayout fromProperties(Properties props, String key, IdLayout defaultLayout) {
+        String presetName = props.getProperty(key);
+        IdLayout base = presetName == null || presetName.trim().isEmpty() ? defaultLayout : preset(presetName);
+
+        return new IdLayout(
+                (int) longProperty(props, key + ".timestamp.bits", base.timestampBits),
+                (int) longProperty(props, key + ".worker.bits", base.workerIdBits),
+                (int) longProperty(props, key + ".sequence.bits", base.sequenceBits),
+                longProperty(props, key + ".time.unit", base.timeUnit),
+                longProperty(props, key + ".epoch", base.epoch));
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number " + value + " for " + key);
+        }
+    }
+
+    public int getTimestampBits() {
+        return timestampBits;
+    }
+
+    public int getWorkerIdBits() {
+        return workerIdBits;
+    }
+
+    public int getSequenceBits() {
+        return sequenceBits;
+    }
+
+    public long getTimeUnit() {
+        return timeUnit;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public long getMaxWorkerId() {
+        return maxWorkerId;
+    }
+
+    public long getSequenceMask() {
+        return sequenceMask;
+    }
+
+    public int getWorkerIdShift() {
+        return sequenceBits;
+    }
+
+    public int getTimestampLeftShift() {
+        return sequenceBits + workerIdBits;
+    }
+
+    /**
+     * Max ids one worker can generate per second.
+     *
+     * @return max ids per second
+     */
+    public long maxIdsPerSecond() {
+        return (sequenceMask + 1) * 1000L / timeUnit;
+    }
+
+    /**
+     * Millis from epoch until the timestamp bits are used up.
+     *
+     * @return lifetime millis, or Long.MAX_VALUE when it is too long to count
+     */
+    public long lifetimeMillis() {
+        if (maxTimestamp >= Long.MAX_VALUE / timeUnit) return Long.MAX_VALUE;
+
+        return (maxTimestamp + 1) * timeUnit;
+    }
+
+    /**
+     * Millis since 1970 when the timestamp bits are used up.
+     *
+     * @return expire millis, or Long.MAX_VALUE when it is too long to count
+     */
+    public long expireMillis() {
+        long lifetime = lifetimeMillis();
+        if (lifetime >= Long.MAX_VALUE - epoch) return Long.MAX_VALUE;
+
+        return epoch + lifetime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IdLayout)) return false;
+
+        IdLayout that = (IdLayout) o;
+        return timestampBits == that.timestampBits && workerIdBits == that.workerIdBits
+                && sequenceBits == that.sequenceBits && timeUnit == that.timeUnit && epoch == that.epoch;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = timestampBits;
+        result = 31 * result + workerIdBits;
+        result = 31 * result + sequenceBits;
+        result = 31 * result + (int) (timeUnit ^ (timeUnit >>> 32));
+        result = 31 * result + (int) (epoch ^ (epoch >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "IdLayout{" + timestampBits + "/" + workerIdBits + "/" + sequenceBits
+                + ", timeUnit=" + timeUnit + "ms, epoch=" + epoch
+                + ", maxIdsPerSecond=" + maxIdsPerSecond() + ", lifetimeMillis=" + lifetimeMillis() + "}";
+    }
+}
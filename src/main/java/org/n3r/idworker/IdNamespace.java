@@ -0,0 +1,77 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.metrics.IdMetrics;
+
+/**
+ * An independent id generator of a namespace, like the table orders, got by {@link Id#of(String)}
+ * or {@link IdGenerator#of(String)}.
+ * <p>
+ * Each namespace has its own {@link IdWorker} with its own sequence, so a hot namespace doesn't use up
+ * the sequence capacity of the others. The ids are only unique in the namespace.
+ * The layout is configured by ns.&lt;name&gt;.layout in idworker-client.properties, like ns.orders.layout=high_sequence,
+ * and the layout of {@link Id} is used by default. The worker id should fit the worker id bits of the layout,
+ * otherwise the namespace fails at the first use. Its ids are counted by {@link IdMetrics} as ns.&lt;name&gt;.
+ */
+public class IdNamespace {
+    private final IdGenerator generator;
+    private final String name;
+    private final IdLayout layout;
+    private volatile IdWorker idWorker;
+
+    IdNamespace(IdGenerator generator, String name, IdLayout layout) {
+        this.generator = generator;
+        this.name = name;
+        this.layout = layout;
+    }
+
+    public long next() {
+        IdWorker worker = idWorker;
+        return worker != null && generator.isCurrent(worker.getWorkerId()) ? worker.nextId() : createIdWorker().nextId();
+    }
+
+    private synchronized IdWorker createIdWorker() {
+        if (idWorker == null || !generator.isCurrent(idWorker.getWorkerId())) {
+            long workerId = generator.getWorkerId();
+            if (workerId > layout.getMaxWorkerId())
+                throw new IllegalStateException("worker id " + workerId + " doesn't fit the "
+                        + layout.getWorkerIdBits() + " worker id bits of namespace " + name);
+
+            IdWorker worker = new IdWorker(workerId, layout);
+            generator.resume(worker);
+            unregister();
+            IdMetrics.register("ns." + name, worker);
+            idWorker = worker;
+        }
+
+        return idWorker;
+    }
+
+    /**
+     * Drop the id worker, which is created again with the new worker id at next use.
+     */
+    synchronized void reset() {
+        unregister();
+        idWorker = null;
+    }
+
+    private void unregister() {
+        if (idWorker != null) IdMetrics.unregister("ns." + name, idWorker);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    public IdDecoder getDecoder() {
+        return new IdDecoder(layout);
+    }
+
+    @Override
+    public String toString() {
+        return "IdNamespace{name=" + name + ", layout=" + layout + "}";
+    }
+}
@@ -0,0 +1,105 @@
+package org.n3r.idworker;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher of id chunks in the reactive streams protocol: the subscriber requests n chunks,
+ * and at most n chunks are reserved from the {@link IdGenerator} and emitted, so nothing is buffered.
+ * <p>
+ * The chunks are emitted in the thread calling {@link Subscription#request(long)}, and the recursive requests
+ * from {@link Subscriber#onNext(long[])} only add the demand, which is drained by the outer call.
+ * The id stream is infinite, so {@link Subscriber#onComplete()} is never called.
+ */
+public class IdPublisher {
+    private final IdGenerator generator;
+    private final int chunkSize;
+
+    IdPublisher(IdGenerator generator, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunk size should be positive");
+
+        this.generator = generator;
+        this.chunkSize = chunkSize;
+    }
+
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(long[] chunk);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        void request(long n);
+
+        void cancel();
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    private class ChunkSubscription implements Subscription {
+        private final Subscriber subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger draining = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        ChunkSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled.get()) return;
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request should be positive, but " + n));
+                return;
+            }
+
+            addDemand(n);
+            drain();
+        }
+
+        private void addDemand(long n) {
+            while (true) {
+                long current = demand.get();
+                long next = current + n < 0 ? Long.MAX_VALUE : current + n; // unbounded when overflowed
+                if (demand.compareAndSet(current, next)) return;
+            }
+        }
+
+        private void drain() {
+            if (draining.getAndIncrement() != 0) return;
+
+            int missed = 1;
+            do {
+                while (demand.get() > 0 && !cancelled.get()) {
+                    long[] chunk = new long[chunkSize];
+                    try {
+                        generator.nextIds(chunk);
+                    } catch (RuntimeException e) {
+                        cancel();
+                        subscriber.onError(e);
+                        return;
+                    }
+
+                    if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    subscriber.onNext(chunk);
+                }
+
+                missed = draining.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.n3r.idworker;
+
+import java.util.Iterator;
+
+/**
+ * An infinite stream of ids, which reserves the ids from the {@link IdGenerator} in chunks,
+ * so the consumer doesn't take the generator lock per id.
+ * <p>
+ * Not thread safe. For parallel consumers, each one takes its own stream by {@link #trySplit()},
+ * which shares the generator, so the ids of all the splits are still unique.
+ */
+public class IdStream implements Iterator<Long> {
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final IdGenerator generator;
+    private final long[] chunk;
+    private int position;
+
+    IdStream(IdGenerator generator, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunk size should be positive");
+
+        this.generator = generator;
+        this.chunk = new long[chunkSize];
+        this.position = chunkSize;
+    }
+
+    public long nextLong() {
+        if (position == chunk.length) {
+            generator.nextIds(chunk);
+            position = 0;
+        }
+
+        return chunk[position++];
+    }
+
+    /**
+     * Fill the array with next ids.
+     *
+     * @param dst the array to fill
+     */
+    public void next(long[] dst) {
+        int filled = Math.min(dst.length, chunk.length - position);
+        System.arraycopy(chunk, position, dst, 0, filled);
+        position += filled;
+
+        if (filled < dst.length) {
+            long[] rest = new long[dst.length - filled];
+            generator.nextIds(rest);
+            System.arraycopy(rest, 0, dst, filled, rest.length);
+        }
+    }
+
+    /**
+     * Split a new stream on the same generator for another consumer.
+     *
+     * @return new stream
+     */
+    public IdStream trySplit() {
+        return new IdStream(generator, chunk.length);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    @Override
+    public Long next() {
+        return nextLong();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+}
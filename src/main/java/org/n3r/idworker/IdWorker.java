@@ -1,16 +1,26 @@
 package org.n3r.idworker;
 
+import org.n3r.idworker.metrics.IdMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.security.SecureRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class IdWorker {
-    protected long epoch = 1387886498127L; // 2013-12-24 20:01:38.127
+public class IdWorker implements IdMetrics.Source {
+    /**
+     * Wait at most the millis for the clock to catch up with the high-water mark when resuming,
+     * which is one cadence ahead after a quick restart.
+     */
+    public static final long MAX_RESUME_WAIT_MILLIS = 1000;
 
+    protected long epoch = IdLayout.DEFAULT_EPOCH; // 2013-12-24 20:01:38.127
+
+    protected final IdLayout layout;
     protected long workerIdBits;
     protected long maxWorkerId;
     protected long sequenceBits;
+    protected long timeUnit;
+    protected long maxTimestamp;
 
     protected long workerIdShift;
     protected long timestampLeftShift;
@@ -20,78 +30,255 @@ public class IdWorker {
 
     protected final long workerId;
     protected long sequence = 0L;
+    private HighWaterMark highWaterMark;
+    private long markMillis;
+    /**
+     * Guards the sequence state instead of the monitor, so the virtual threads are parked rather than pinned.
+     */
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected long ids; // guarded by lock
     protected Logger logger = LoggerFactory.getLogger(IdWorker.class);
 
     public IdWorker(long workerId) {
-        workerIdBits = workerIdBits();
-        maxWorkerId = -1L ^ (-1L << workerIdBits);
-        sequenceBits = sequenceBits();
+        this(workerId, null);
+    }
+
+    /**
+     * Create an id worker with the layout.
+     *
+     * @param workerId worker id
+     * @param layout   bit layout, null to use the layout by {@link #workerIdBits()} and {@link #sequenceBits()}
+     */
+    public IdWorker(long workerId, IdLayout layout) {
+        if (layout == null) {
+            long bits = workerIdBits() + sequenceBits();
+            layout = new IdLayout((int) (63 - bits), (int) workerIdBits(), (int) sequenceBits(), 1, epoch);
+        }
+
+        this.layout = layout;
+        epoch = layout.getEpoch();
+        workerIdBits = layout.getWorkerIdBits();
+        maxWorkerId = layout.getMaxWorkerId();
+        sequenceBits = layout.getSequenceBits();
+        timeUnit = layout.getTimeUnit();
+        maxTimestamp = layout.getMaxTimestamp();
 
-        workerIdShift = sequenceBits;
-        timestampLeftShift = sequenceBits + workerIdBits;
-        sequenceMask = -1L ^ (-1L << sequenceBits);
+        workerIdShift = layout.getWorkerIdShift();
+        timestampLeftShift = layout.getTimestampLeftShift();
+        sequenceMask = layout.getSequenceMask();
 
         this.workerId = checkWorkerId(workerId);
 
-        logger.debug("worker starting. timestamp left shift {}, worker id bits {}, sequence bits {}, worker id {}",
-                timestampLeftShift, workerIdBits, sequenceBits, workerId);
+        logger.debug("worker starting. timestamp left shift {}, worker id bits {}, sequence bits {}, time unit {}, worker id {}",
+                timestampLeftShift, workerIdBits, sequenceBits, timeUnit, this.workerId);
+    }
+
+    /**
+     * Ids generated by this worker, summed up by {@link IdMetrics#snapshot()} when registered.
+     */
+    @Override
+    public long idCount() {
+        lock.lock();
+        try {
+            return ids;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getEpoch() {
         return epoch;
     }
 
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Create a decoder for the ids generated by this worker.
+     *
+     * @return id decoder
+     */
+    public IdDecoder decoder() {
+        return new IdDecoder(layout);
+    }
+
+    /**
+     * Worker id bits when no layout is specified.
+     *
+     * @return worker id bits
+     */
     public long workerIdBits() {
         return 10L;
     }
 
+    /**
+     * Sequence bits when no layout is specified.
+     *
+     * @return sequence bits
+     */
     public long sequenceBits() {
         return 11L;
     }
 
+    /**
+     * Reject the worker id out of the layout, instead of a random or masked one which may be used by others.
+     */
     private long checkWorkerId(long workerId) {
-        // sanity check for workerId
-        if (workerId > maxWorkerId || workerId < 0) {
-            int rand = new SecureRandom().nextInt((int) maxWorkerId + 1);
-            logger.warn("worker Id can't be greater than {} or less than 0, use a random {}", maxWorkerId, rand);
-            return rand;
-        }
+        if (workerId > maxWorkerId || workerId < 0)
+            throw new IllegalArgumentException("worker id " + workerId + " is out of [0, " + maxWorkerId + "] of " + layout);
 
         return workerId;
     }
 
-    public synchronized long nextId() {
+    public long nextId() {
+        lock.lock();
+        try {
+            return nextIdLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserve the next ids in one lock acquisition, for the consumers pulling ids in batches.
+     *
+     * @param dst the array to fill
+     */
+    public void nextIds(long[] dst) {
+        nextIds(dst, 0, dst.length);
+    }
+
+    public void nextIds(long[] dst, int offset, int length) {
+        lock.lock();
+        try {
+            for (int i = offset, end = offset + length; i < end; ++i)
+                dst[i] = nextId();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resume from the persisted high-water mark, so the millis used before the restart are never used again,
+     * even when the clock was rolled back. The clock is waited for when the mark is at most
+     * {@link #MAX_RESUME_WAIT_MILLIS} ahead, like after a quick restart, and the ids are rejected by
+     * {@link InvalidSystemClock} until the clock reaches the mark beyond that.
+     *
+     * @param mark high-water mark of the worker id
+     */
+    public void resumeFrom(HighWaterMark mark) {
+        long persisted = mark.get();
+        long millis = millisGen();
+        if (persisted > millis && persisted - millis <= MAX_RESUME_WAIT_MILLIS) {
+            logger.info("wait {} millis for the clock to reach the high-water mark {}", persisted - millis, persisted);
+            sleep(persisted - millis);
+        } else if (persisted > millis) {
+            logger.error("clock is {} millis behind the high-water mark {}", persisted - millis, persisted);
+        }
+
+        resumeFrom(mark, persisted);
+    }
+
+    /**
+     * Resume after the floor millis without waiting, and advance the high-water mark at its cadence then.
+     * The floor is the mark read by an earlier worker of this process, which has waited for it already.
+     *
+     * @param mark        high-water mark of the worker id
+     * @param floorMillis millis used before, which the ids are generated after
+     */
+    public void resumeFrom(HighWaterMark mark, long floorMillis) {
+        lock.lock();
+        try {
+            if (floorMillis > lastMillis) {
+                lastMillis = floorMillis;
+                sequence = sequenceMask; // the ids of the floor tick may be used, so move to the next tick
+            }
+            markMillis = mark.get();
+            highWaterMark = mark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long nextIdLocked() {
         long timestamp = millisGen();
 
         if (timestamp < lastMillis) {
+            IdMetrics.recordClockBackwards();
             logger.error("clock is moving backwards.  Rejecting requests until {}.", lastMillis);
             throw new InvalidSystemClock(String.format(
                     "Clock moved backwards.  Refusing to generate id for {} milliseconds", lastMillis - timestamp));
         }
 
-        if (lastMillis == timestamp) {
+        if (sameTick(lastMillis, timestamp)) {
             sequence = (sequence + 1) & sequenceMask;
-            if (sequence == 0)
+            if (sequence == 0) {
+                long waitStart = System.nanoTime();
                 timestamp = tilNextMillis(lastMillis);
+                IdMetrics.recordSequenceWait(System.nanoTime() - waitStart);
+            }
         } else {
             sequence = 0;
         }
 
-        lastMillis = timestamp;
-        long diff = timestamp - getEpoch();
+        markUsed(timestamp);
+
+        long diff = (timestamp - getEpoch()) / timeUnit;
+        if (diff > maxTimestamp) {
+            logger.error("timestamp bits are used up at {} for {}", timestamp, layout);
+            throw new IllegalStateException("timestamp bits are used up for " + layout);
+        }
+
+        ++ids;
         return (diff << timestampLeftShift) |
                 (workerId << workerIdShift) |
                 sequence;
     }
 
+    /**
+     * Record the millis used for the ids, so the last millis and the high-water mark cover them,
+     * also for the subclasses generating the ids outside {@link #nextId()}. Called under the lock.
+     *
+     * @param timestamp millis used
+     */
+    protected void markUsed(long timestamp) {
+        if (timestamp > lastMillis) lastMillis = timestamp;
+        if (highWaterMark != null && timestamp >= markMillis) markMillis = highWaterMark.advance(timestamp);
+    }
+
     protected long tilNextMillis(long lastMillis) {
         long millis = millisGen();
-        while (millis <= lastMillis)
+        while (millis <= lastMillis || sameTick(lastMillis, millis))
             millis = millisGen();
 
         return millis;
     }
 
+    /**
+     * Check whether the two millis are in the same time unit.
+     */
+    protected boolean sameTick(long millis1, long millis2) {
+        if (millis1 == millis2) return true;
+        if (timeUnit == 1) return false;
+
+        return floorDiv(millis1 - epoch, timeUnit) == floorDiv(millis2 - epoch, timeUnit);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) r--;
+        return r;
+    }
+
     protected long millisGen() {
         return System.currentTimeMillis();
     }
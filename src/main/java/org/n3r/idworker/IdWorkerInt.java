@@ -1,9 +1,22 @@
 package org.n3r.idworker;
 
+/**
+ * The legacy int id worker, which truncates the 64-bit id into an int, so the ids wrap silently.
+ * Use {@link IdWorkerInt31} for a wider range with wrap detection.
+ */
 public class IdWorkerInt extends IdWorker {
+    /**
+     * 53 bits of millis, 32 workers, 32 ids per millis, of which the low 31 bits are kept.
+     */
+    public static final IdLayout LAYOUT = new IdLayout(53, 5, 5, 1, IdLayout.DEFAULT_EPOCH);
 
+    /**
+     * Create an int id worker.
+     *
+     * @param workerId worker id in [0, 31]
+     */
     public IdWorkerInt(long workerId) {
-        super(workerId & (~(-1L << 5L)));
+        super(workerId, LAYOUT);
     }
 
     @Override
@@ -16,7 +29,17 @@ public class IdWorkerInt extends IdWorker {
         return 5L;
     }
 
-    public synchronized int nextIdInt() {
+    /**
+     * Create a decoder for the int ids, whose timestamps are recycled every 2^21 millis.
+     *
+     * @return id decoder
+     */
+    @Override
+    public IdDecoder decoder() {
+        return new IdDecoder(layout, 1L << (31 - timestampLeftShift));
+    }
+
+    public int nextIdInt() {
         int nextIdInt = (int) super.nextId();
         return (nextIdInt << 1) >>> 1;
     }
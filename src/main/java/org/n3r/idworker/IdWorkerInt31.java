@@ -0,0 +1,269 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.metrics.IdMetrics;
+
+/**
+ * A 31-bit positive int id worker: timestamp | worker id | sequence, in a layout of 31 bits total.
+ * <p>
+ * The timestamp is counted in seconds (the time unit of the layout) and recycled every window, so
+ * the ids generated one window ago are reused, which is fine for tables keeping rows shorter than the window.
+ * Every wrap is reported by a warning log and counted by {@link #getWraps()}.
+ * <p>
+ * When the sequence of the current second is used up, the worker borrows the sequences of the following
+ * seconds, at most borrow seconds ahead of the clock, so bursts can go far beyond the per-second capacity
+ * without waiting, and a clock moving backwards within the borrow seconds does not stop the worker.
+ * Past the borrow seconds, a burst waits for the next second, and a clock moved further backwards is refused
+ * by {@link InvalidSystemClock}.
+ * <p>
+ * The borrow seconds are capped at half of the window, so a burst never borrows the seconds of the next wrap.
+ * <p>
+ * The resumed worker starts after the second of the high-water mark, but the borrowed seconds are not persisted
+ * ahead of the clock, so a restart should take longer than the borrow seconds.
+ * <p>
+ * A worker id wider than the worker id bits of the layout is fitted by {@link #layoutFor(IdLayout, long)},
+ * which takes the bits from the sequence down to {@link #MIN_SEQUENCE_BITS}, and then from the timestamp,
+ * so the window shrinks: the 10 bits worker ids get 64 seconds of the default layout.
+ */
+public class IdWorkerInt31 extends IdWorker {
+    /**
+     * 10 bits of seconds (about 17 minutes window), 32 workers, 65536 ids per second.
+     */
+    public static final IdLayout DEFAULT_LAYOUT = new IdLayout(10, 5, 16, 1000, IdLayout.DEFAULT_EPOCH);
+    /**
+     * The sequence bits kept when a wide worker id is fitted, 32768 ids per time unit.
+     */
+    public static final int MIN_SEQUENCE_BITS = 15;
+    public static final long DEFAULT_BORROW_SECONDS = 60;
+
+    private final long windowTicks;
+    private final long maxBorrowTicks;
+
+    private long currentTick = -1L;
+    private long windowIndex = -1L;
+    private long wraps;
+
+    public IdWorkerInt31(long workerId) {
+        this(workerId, DEFAULT_LAYOUT, 0, DEFAULT_BORROW_SECONDS);
+    }
+
+    /**
+     * Create a 31-bit int id worker.
+     *
+     * @param workerId      worker id
+     * @param layout        bit layout of 31 bits total at most
+     * @param windowSeconds seconds before the ids are recycled, 0 to use the full range of the timestamp bits
+     * @param borrowSeconds max seconds the worker can run ahead of the clock when the sequence is used up
+     */
+    public IdWorkerInt31(long workerId, IdLayout layout, long windowSeconds, long borrowSeconds) {
+        super(workerId, layout);
+
+        int totalBits = layout.getTimestampBits() + layout.getWorkerIdBits() + layout.getSequenceBits();
+        if (totalBits > 31)
+            throw new IllegalArgumentException("total bits of int layout should not be greater than 31, but " + totalBits);
+
+        long maxWindowTicks = layout.getMaxTimestamp() + 1;
+        windowTicks = windowSeconds <= 0 ? maxWindowTicks : windowSeconds * 1000L / timeUnit;
+        if (windowTicks < 1 || windowTicks > maxWindowTicks)
+            throw new IllegalArgumentException("window of " + windowSeconds + " seconds is out of the timestamp bits of " + layout);
+        if (borrowSeconds < 0) throw new IllegalArgumentException("borrow seconds can't be negative");
+
+        maxBorrowTicks = Math.min(borrowSeconds * 1000L / timeUnit, windowTicks / 2);
+    }
+
+    /**
+     * Fit the worker id into the layout, by taking the worker id bits from the sequence down to
+     * {@link #MIN_SEQUENCE_BITS}, and then from the timestamp.
+     *
+     * @param layout   bit layout
+     * @param workerId worker id
+     * @return the layout itself when the worker id fits it
+     */
+    public static IdLayout layoutFor(IdLayout layout, long workerId) {
+        if (workerId <= layout.getMaxWorkerId()) return layout;
+
+        int extra = 64 - Long.numberOfLeadingZeros(workerId) - layout.getWorkerIdBits();
+        int fromSequence = Math.min(extra, Math.max(0, layout.getSequenceBits() - MIN_SEQUENCE_BITS));
+        int fromTimestamp = extra - fromSequence;
+        if (fromTimestamp >= layout.getTimestampBits())
+            throw new IllegalArgumentException("worker id " + workerId + " doesn't fit the int layout " + layout);
+
+        return new IdLayout(layout.getTimestampBits() - fromTimestamp, layout.getWorkerIdBits() + extra,
+                layout.getSequenceBits() - fromSequence, layout.getTimeUnit(), layout.getEpoch());
+    }
+
+    /**
+     * Create a decoder for the int ids, whose timestamps are recycled every window.
+     *
+     * @return id decoder
+     */
+    @Override
+    public IdDecoder decoder() {
+        return new IdDecoder(layout, windowTicks);
+    }
+
+    @Override
+    public long nextId() {
+        return nextIdInt();
+    }
+
+    public int nextIdInt() {
+        lock.lock();
+        try {
+            return (int) nextIdLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fill the array with next ids in one locked batch.
+     *
+     * @param dst the array to fill
+     */
+    public void nextInts(int[] dst) {
+        lock.lock();
+        try {
+            for (int i = 0; i < dst.length; ++i)
+                dst[i] = (int) nextIdLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resume after the second of the floor millis.
+     *
+     * @param mark        high-water mark of the worker id
+     * @param floorMillis millis used before
+     */
+    @Override
+    public void resumeFrom(HighWaterMark mark, long floorMillis) {
+        super.resumeFrom(mark, floorMillis);
+
+        lock.lock();
+        try {
+            long tick = (lastMillis - epoch) / timeUnit;
+            if (tick > currentTick) {
+                currentTick = tick;
+                sequence = sequenceMask; // the ids of the mark second may be used
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long nextIdLong() {
+        long millis = millisGen();
+        long now = (millis - epoch) / timeUnit;
+
+        if (now > currentTick) {
+            currentTick = now;
+            sequence = 0;
+        } else if (sequence == sequenceMask) {
+            tilBorrowable(currentTick + 1);
+            currentTick += 1;
+            sequence = 0;
+        } else {
+            ++sequence;
+        }
+
+        checkWrap();
+        ++ids;
+        lastMillis = currentTick * timeUnit + epoch;
+        markUsed(Math.min(lastMillis, millis)); // the borrowed seconds are not persisted
+
+        return ((currentTick % windowTicks) << timestampLeftShift) |
+                (workerId << workerIdShift) |
+                sequence;
+    }
+
+    private long currentTick() {
+        return (millisGen() - epoch) / timeUnit;
+    }
+
+    /**
+     * Wait for the clock to be within the borrow seconds of the tick, which takes one tick at most after a burst,
+     * and refuse the clock moved backwards further, instead of sleeping under the lock until it catches up.
+     */
+    private void tilBorrowable(long tick) {
+        long now = currentTick();
+        if (tick - now <= maxBorrowTicks) return;
+        if (tick - now > maxBorrowTicks + 1) throw clockBackwards(tick, now);
+
+        logger.warn("int id sequences of {} seconds ahead are used up, waiting", maxBorrowTicks * timeUnit / 1000);
+        long waitStart = System.nanoTime();
+        while (tick - now > maxBorrowTicks) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted when waiting for int id sequences", e);
+            }
+            now = currentTick();
+            if (tick - now > maxBorrowTicks + 1) throw clockBackwards(tick, now);
+        }
+        IdMetrics.recordSequenceWait(System.nanoTime() - waitStart);
+    }
+
+    private InvalidSystemClock clockBackwards(long tick, long now) {
+        IdMetrics.recordClockBackwards();
+        long until = (tick - maxBorrowTicks) * timeUnit + epoch;
+        logger.error("clock is moving backwards.  Rejecting int id requests until {}.", until);
+        return new InvalidSystemClock(String.format(
+                "Clock moved backwards.  Refusing to generate int id for %d milliseconds", until - now * timeUnit - epoch));
+    }
+
+    private void checkWrap() {
+        long index = currentTick / windowTicks;
+        if (index == windowIndex) return;
+
+        if (windowIndex >= 0) {
+            ++wraps;
+            logger.warn("int id window of {} seconds wrapped {} times, ids generated one window ago are reused",
+                    getWindowSeconds(), wraps);
+        }
+        windowIndex = index;
+    }
+
+    /**
+     * Times the window has wrapped since this worker started.
+     *
+     * @return wrap times
+     */
+    public long getWraps() {
+        lock.lock();
+        try {
+            return wraps;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWindowSeconds() {
+        return windowTicks * timeUnit / 1000;
+    }
+
+    /**
+     * Seconds left before the current window wraps.
+     *
+     * @return seconds to wrap
+     */
+    public long secondsToWrap() {
+        lock.lock();
+        try {
+            long tick = Math.max(currentTick, currentTick());
+            return (windowTicks - tick % windowTicks) * timeUnit / 1000;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Max ids per second in a sustained rate, bursts can borrow from the following seconds.
+     *
+     * @return max ids per second
+     */
+    public long maxIdsPerSecond() {
+        return layout.maxIdsPerSecond();
+    }
+}
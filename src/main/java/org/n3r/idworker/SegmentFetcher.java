@@ -0,0 +1,15 @@
+package org.n3r.idworker;
+
+/**
+ * Fetcher of the id segments used by {@link SegmentIdWorker}.
+ */
+public interface SegmentFetcher {
+    /**
+     * Fetch a new segment of ids.
+     *
+     * @param name segment name
+     * @param size ids in the segment
+     * @return the first id inclusive, and the end id exclusive
+     */
+    long[] fetch(String name, int size);
+}
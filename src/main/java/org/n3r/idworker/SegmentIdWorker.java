@@ -0,0 +1,281 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.metrics.IdMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An id worker leasing contiguous id segments from the idworker server, for the services which
+ * can't hold a stable worker id.
+ * <p>
+ * The segments are double buffered: when the used ratio of the current segment reaches the prefetch ratio,
+ * the next segment is fetched in background, so the request path only waits on the network when a whole
+ * segment is used up before the next one arrives, which is counted by {@link #getFetchWaits()}.
+ * The prefetches of all the workers run on a single daemon thread, and a failed one is retried by the later ids
+ * after a backoff doubling up to {@link #MAX_RETRY_MILLIS}. The fetches never hold the lock of the worker.
+ */
+public class SegmentIdWorker implements IdMetrics.Source {
+    static final long MIN_RETRY_MILLIS = 100;
+    static final long MAX_RETRY_MILLIS = 10000;
+
+    private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "idworker-segment-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final String name;
+    private final int segmentSize;
+    private final long prefetchThreshold;
+    private final SegmentFetcher fetcher;
+
+    private volatile Segment current;
+    private volatile Segment next;
+    private final AtomicBoolean fetching = new AtomicBoolean();
+    /**
+     * Guards the segment switch instead of the monitor, so the waiting virtual threads are parked rather than pinned.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition fetched = lock.newCondition();
+    private volatile long retryAt;
+    private long retryMillis; // guarded by fetching
+    private final AtomicLong ids = new AtomicLong();
+
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong fetchFailures = new AtomicLong();
+    private final AtomicLong fetchWaits = new AtomicLong();
+    private final AtomicLong totalFetchMillis = new AtomicLong();
+    private volatile long lastFetchMillis;
+    private volatile long maxFetchMillis;
+
+    Logger logger = LoggerFactory.getLogger(SegmentIdWorker.class);
+
+    /**
+     * Create a segment id worker.
+     *
+     * @param name          segment name
+     * @param segmentSize   ids in one segment, like 10000
+     * @param prefetchRatio used ratio of the current segment to prefetch the next one, like 0.2, in [0, 1)
+     * @param fetcher       segment fetcher
+     */
+    public SegmentIdWorker(String name, int segmentSize, double prefetchRatio, SegmentFetcher fetcher) {
+        if (segmentSize < 1) throw new IllegalArgumentException("segment size should be positive");
+        if (prefetchRatio < 0 || prefetchRatio >= 1) throw new IllegalArgumentException("prefetch ratio should be in [0, 1)");
+
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.prefetchThreshold = (long) (segmentSize * prefetchRatio);
+        this.fetcher = fetcher;
+        this.current = new Segment(0, 0); // empty, fetched at first use
+    }
+
+    public long nextId() {
+        while (true) {
+            Segment segment = current;
+            long id = segment.cursor.getAndIncrement();
+            if (id < segment.end) {
+                if (id - segment.start >= prefetchThreshold && next == null && !fetching.get()) prefetch();
+                ids.incrementAndGet();
+                return id;
+            }
+
+            switchSegment(segment);
+        }
+    }
+
+    private void prefetch() {
+        long retry = retryAt;
+        if (retry != 0 && System.currentTimeMillis() < retry) return;
+        if (!fetching.compareAndSet(false, true)) return;
+
+        if (next != null) { // switched in by another thread meanwhile
+            fetching.set(false);
+            return;
+        }
+
+        prefetcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                Segment segment = null;
+                try {
+                    segment = fetch();
+                } catch (Exception e) {
+                    logger.warn("prefetch segment {} error", name, e);
+                } finally {
+                    fetched(segment);
+                }
+            }
+        });
+    }
+
+    /**
+     * Take the fetched segment as the next one, or back off the prefetch retries when failed.
+     * Called by the thread which set fetching.
+     */
+    private void fetched(Segment segment) {
+        if (segment != null) {
+            retryMillis = 0;
+            retryAt = 0;
+        } else {
+            retryMillis = Math.min(MAX_RETRY_MILLIS, Math.max(MIN_RETRY_MILLIS, retryMillis * 2));
+            retryAt = System.currentTimeMillis() + retryMillis;
+        }
+
+        lock.lock();
+        try {
+            if (segment != null) next = segment;
+            fetching.set(false);
+            fetched.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Switch to the next segment when the used up one is still current, which fetches the next segment
+     * outside the lock when no fetch is in flight, or waits for the one in flight.
+     */
+    private void switchSegment(Segment usedUp) {
+        boolean waited = false;
+        while (true) {
+            lock.lock();
+            try {
+                if (current != usedUp) return;
+
+                if (next != null) {
+                    current = next;
+                    next = null;
+                    return;
+                }
+
+                if (!waited) {
+                    fetchWaits.incrementAndGet();
+                    waited = true;
+                }
+
+                if (!fetching.compareAndSet(false, true)) {
+                    try {
+                        fetched.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted when waiting for segment " + name, e);
+                    }
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            Segment segment = null;
+            try {
+                segment = fetch();
+            } finally {
+                fetched(segment);
+            }
+        }
+    }
+
+    private Segment fetch() {
+        long start = System.currentTimeMillis();
+        try {
+            long[] startEnd = fetcher.fetch(name, segmentSize);
+            fetches.incrementAndGet();
+            return new Segment(startEnd[0], startEnd[1]);
+        } catch (RuntimeException e) {
+            fetchFailures.incrementAndGet();
+            throw e;
+        } finally {
+            long millis = System.currentTimeMillis() - start;
+            lastFetchMillis = millis;
+            totalFetchMillis.addAndGet(millis);
+            if (millis > maxFetchMillis) maxFetchMillis = millis;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long idCount() {
+        return ids.get();
+    }
+
+    /**
+     * Used ratio of the current segment.
+     *
+     * @return ratio in [0, 1]
+     */
+    public double getSegmentUsage() {
+        Segment segment = current;
+        long size = segment.end - segment.start;
+        if (size <= 0) return 1;
+
+        return Math.min(1.0, (double) (segment.cursor.get() - segment.start) / size);
+    }
+
+    public boolean isNextSegmentReady() {
+        return next != null;
+    }
+
+    public long getFetches() {
+        return fetches.get();
+    }
+
+    public long getFetchFailures() {
+        return fetchFailures.get();
+    }
+
+    /**
+     * Times the request path waited for a segment.
+     *
+     * @return wait times
+     */
+    public long getFetchWaits() {
+        return fetchWaits.get();
+    }
+
+    public long getLastFetchMillis() {
+        return lastFetchMillis;
+    }
+
+    public long getMaxFetchMillis() {
+        return maxFetchMillis;
+    }
+
+    public long getAvgFetchMillis() {
+        long count = fetches.get() + fetchFailures.get();
+        return count == 0 ? 0 : totalFetchMillis.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentIdWorker{name=" + name + ", segmentUsage=" + getSegmentUsage()
+                + ", fetches=" + getFetches() + ", fetchFailures=" + getFetchFailures() + ", fetchWaits=" + getFetchWaits()
+                + ", lastFetchMillis=" + getLastFetchMillis() + ", avgFetchMillis=" + getAvgFetchMillis()
+                + ", maxFetchMillis=" + getMaxFetchMillis() + "}";
+    }
+
+    static final class Segment {
+        final long start;
+        final long end;
+        final AtomicLong cursor;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.metrics.IdMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An id worker embedding the shard gene of a routing key into the low bits of the ids:
+ * <pre>
+ * timestamp | worker id | sequence of the gene | gene bits
+ * </pre>
+ * The gene is the low gene bits of the shard key, like the user id, so an order id created by
+ * {@link #nextId(long)} with the user id is routed by {@link #shardOf(long)} to the same shard as the user,
+ * when the shards are 2^geneBits or a divisor of it. Hash the non-numeric keys first.
+ * <p>
+ * Each gene has its own sequence and lock, so the genes don't contend with each other,
+ * and each gene takes 2^(sequenceBits - geneBits) ids per time unit.
+ * The base lock is only taken once a milli of a gene, to keep the last millis of the worker and its high-water mark
+ * at the max of the genes.
+ */
+public class ShardIdWorker extends IdWorker {
+    private final int geneBits;
+    private final long geneMask;
+    private final long geneSequenceMask;
+
+    private final long[] geneLastMillis;
+    private final long[] geneSequences;
+    private final long[] geneIds; // guarded by the gene locks
+    private final ReentrantLock[] geneLocks;
+
+    public ShardIdWorker(long workerId, int geneBits) {
+        this(workerId, IdLayout.DEFAULT, geneBits);
+    }
+
+    /**
+     * Create a shard id worker.
+     *
+     * @param workerId worker id
+     * @param layout   bit layout, whose sequence bits are shared by the gene and the sequence of the gene
+     * @param geneBits bits of the gene, less than the sequence bits
+     */
+    public ShardIdWorker(long workerId, IdLayout layout, int geneBits) {
+        super(workerId, layout);
+        if (geneBits < 1 || geneBits >= layout.getSequenceBits())
+            throw new IllegalArgumentException("gene bits should be in [1, " + layout.getSequenceBits() + ")");
+
+        this.geneBits = geneBits;
+        this.geneMask = -1L ^ (-1L << geneBits);
+        this.geneSequenceMask = sequenceMask >>> geneBits;
+
+        int genes = 1 << geneBits;
+        this.geneLastMillis = new long[genes];
+        this.geneSequences = new long[genes];
+        this.geneIds = new long[genes];
+        this.geneLocks = new ReentrantLock[genes];
+        for (int i = 0; i < genes; ++i) {
+            geneLastMillis[i] = -1L;
+            geneLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Next id of a random gene, for the ids without a routing key.
+     *
+     * @return id
+     */
+    @Override
+    public long nextId() {
+        return nextId(ThreadLocalRandom.current().nextInt(1 << geneBits));
+    }
+
+    /**
+     * Fill the array with next ids of a random gene in one lock acquisition.
+     *
+     * @param dst    the array to fill
+     * @param offset start of the array
+     * @param length ids to fill
+     */
+    @Override
+    public void nextIds(long[] dst, int offset, int length) {
+        int gene = ThreadLocalRandom.current().nextInt(1 << geneBits);
+        ReentrantLock geneLock = geneLocks[gene];
+        geneLock.lock();
+        try {
+            for (int i = offset, end = offset + length; i < end; ++i) dst[i] = nextIdOfGene(gene);
+        } finally {
+            geneLock.unlock();
+        }
+    }
+
+    @Override
+    public long idCount() {
+        long count = super.idCount();
+        for (int gene = 0; gene < geneLocks.length; ++gene) {
+            geneLocks[gene].lock();
+            try {
+                count += geneIds[gene];
+            } finally {
+                geneLocks[gene].unlock();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Resume after the floor millis, moving all the genes past it too.
+     *
+     * @param mark        high-water mark of the worker id
+     * @param floorMillis millis used before
+     */
+    @Override
+    public void resumeFrom(HighWaterMark mark, long floorMillis) {
+        super.resumeFrom(mark, floorMillis);
+
+        long floor;
+        lock.lock();
+        try {
+            floor = lastMillis;
+        } finally {
+            lock.unlock();
+        }
+
+        for (int gene = 0; gene < geneLocks.length; ++gene) {
+            geneLocks[gene].lock();
+            try {
+                if (geneLastMillis[gene] < floor) {
+                    geneLastMillis[gene] = floor;
+                    geneSequences[gene] = geneSequenceMask; // the ids of the mark tick may be used
+                }
+            } finally {
+                geneLocks[gene].unlock();
+            }
+        }
+    }
+
+    /**
+     * Next id carrying the gene of the shard key.
+     *
+     * @param shardKey routing key or its hash, whose low gene bits are embedded
+     * @return id
+     */
+    public long nextId(long shardKey) {
+        int gene = (int) (shardKey & geneMask);
+        ReentrantLock geneLock = geneLocks[gene];
+        geneLock.lock();
+        try {
+            return nextIdOfGene(gene);
+        } finally {
+            geneLock.unlock();
+        }
+    }
+
+    /**
+     * Fill the array with next ids of the shard key in one lock acquisition.
+     *
+     * @param shardKey routing key or its hash
+     * @param dst      the array to fill
+     */
+    public void nextIds(long shardKey, long[] dst) {
+        int gene = (int) (shardKey & geneMask);
+        ReentrantLock geneLock = geneLocks[gene];
+        geneLock.lock();
+        try {
+            for (int i = 0; i < dst.length; ++i) dst[i] = nextIdOfGene(gene);
+        } finally {
+            geneLock.unlock();
+        }
+    }
+
+    private long nextIdOfGene(int gene) {
+        long last = geneLastMillis[gene];
+        long timestamp = millisGen();
+
+        if (timestamp < last) {
+            IdMetrics.recordClockBackwards();
+            logger.error("clock is moving backwards.  Rejecting requests of gene {} until {}.", gene, last);
+            throw new InvalidSystemClock(String.format(
+                    "Clock moved backwards.  Refusing to generate id for %d milliseconds", last - timestamp));
+        }
+
+        long sequence;
+        if (sameTick(last, timestamp)) {
+            sequence = (geneSequences[gene] + 1) & geneSequenceMask;
+            if (sequence == 0) {
+                long waitStart = System.nanoTime();
+                timestamp = tilNextMillis(last);
+                IdMetrics.recordSequenceWait(System.nanoTime() - waitStart);
+            }
+        } else {
+            sequence = 0;
+        }
+
+        geneSequences[gene] = sequence;
+        geneLastMillis[gene] = timestamp;
+        if (timestamp != last) {
+            lock.lock();
+            try {
+                markUsed(timestamp);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long diff = (timestamp - getEpoch()) / timeUnit;
+        if (diff > maxTimestamp) {
+            logger.error("timestamp bits are used up at {} for {}", timestamp, layout);
+            throw new IllegalStateException("timestamp bits are used up for " + layout);
+        }
+
+        ++geneIds[gene];
+        return (diff << timestampLeftShift) |
+                (workerId << workerIdShift) |
+                (sequence << geneBits) |
+                gene;
+    }
+
+    /**
+     * The shard gene of the id, which equals the low gene bits of its shard key.
+     *
+     * @param id id created by this worker
+     * @return gene
+     */
+    public int shardOf(long id) {
+        return (int) (id & geneMask);
+    }
+
+    /**
+     * The shard gene of the id, for the routing layers without a worker.
+     *
+     * @param id       id
+     * @param geneBits gene bits of the worker creating the id
+     * @return gene
+     */
+    public static int shardOf(long id, int geneBits) {
+        return (int) (id & (-1L ^ (-1L << geneBits)));
+    }
+
+    public int getGeneBits() {
+        return geneBits;
+    }
+}
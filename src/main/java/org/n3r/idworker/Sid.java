@@ -1,29 +1,20 @@
 package org.n3r.idworker;
 
-import org.n3r.idworker.strategy.DefaultWorkerIdStrategy;
 import org.n3r.idworker.utils.Utils;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
+/**
+ * The facade of the Sid of the default {@link IdGenerator} shared with {@link Id}, see {@link IdGenerator#nextSid()}.
+ */
 public class Sid {
-    private static WorkerIdStrategy workerIdStrategy;
-    private static IdWorker idWorker;
-
-    static {
-        configure(DefaultWorkerIdStrategy.instance);
-    }
-
-
-    public static synchronized void configure(WorkerIdStrategy custom) {
-        if (workerIdStrategy != null) workerIdStrategy.release();
-        workerIdStrategy = custom;
-        idWorker = new IdWorker(workerIdStrategy.availableWorkerId()) {
-            @Override
-            public long getEpoch() {
-                return Utils.midnightMillis();
-            }
-        };
+    /**
+     * Change the worker id strategy of the default id generator, the same as {@link Id#configure(WorkerIdStrategy)}.
+     *
+     * @param custom worker id strategy
+     */
+    public static void configure(WorkerIdStrategy custom) {
+        Id.configure(custom);
     }
 
     /**
@@ -35,9 +26,7 @@ public class Sid {
      */
 
     public static String next() {
-        long id = idWorker.nextId();
-        String yyMMdd = new SimpleDateFormat("yyMMdd").format(new Date());
-        return yyMMdd + String.format("%014d", id);
+        return Id.generator().nextSid();
     }
 
 
@@ -46,8 +35,54 @@ public class Sid {
      * @return 固定16位的字母数字混编的字符串
      */
     public static String nextShort() {
-        long id = idWorker.nextId();
-        String yyMMdd = new SimpleDateFormat("yyMMdd").format(new Date());
-        return yyMMdd + Utils.padLeft(Utils.encode(id), 10, '0');
+        return Id.generator().nextShortSid();
+    }
+
+    /**
+     * 时间窗口起始对应的最小Sid，用于按主键范围扫描。
+     *
+     * @param from 时间窗口起始（包含）
+     * @return 固定21位数字字符串
+     */
+    public static String lowerBound(Date from) {
+        DayIdWorker.Day day = new DayIdWorker.Day(from.getTime());
+        long id = Math.max(0, IdDecoder.SID.minIdAt(from.getTime() - day.midnight));
+        return day.yyMMdd + Utils.padLeft(String.valueOf(id), 15, '0');
+    }
+
+    /**
+     * 时间窗口结束对应的最大Sid，用于按主键范围扫描。
+     *
+     * @param to 时间窗口结束（包含）
+     * @return 固定21位数字字符串
+     */
+    public static String upperBound(Date to) {
+        DayIdWorker.Day day = new DayIdWorker.Day(to.getTime());
+        long id = IdDecoder.SID.maxIdAt(to.getTime() - day.midnight);
+        return day.yyMMdd + Utils.padLeft(String.valueOf(id), 15, '0');
+    }
+
+    /**
+     * 时间窗口起始对应的最小短Sid。
+     *
+     * @param from 时间窗口起始（包含）
+     * @return 固定16位的字母数字混编的字符串
+     */
+    public static String lowerBoundShort(Date from) {
+        DayIdWorker.Day day = new DayIdWorker.Day(from.getTime());
+        long id = Math.max(0, IdDecoder.SID.minIdAt(from.getTime() - day.midnight));
+        return day.yyMMdd + Utils.padLeft(Utils.encode(id), 10, '0');
+    }
+
+    /**
+     * 时间窗口结束对应的最大短Sid。
+     *
+     * @param to 时间窗口结束（包含）
+     * @return 固定16位的字母数字混编的字符串
+     */
+    public static String upperBoundShort(Date to) {
+        DayIdWorker.Day day = new DayIdWorker.Day(to.getTime());
+        long id = IdDecoder.SID.maxIdAt(to.getTime() - day.midnight);
+        return day.yyMMdd + Utils.padLeft(Utils.encode(id), 10, '0');
     }
 }
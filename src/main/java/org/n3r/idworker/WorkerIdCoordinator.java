@@ -0,0 +1,34 @@
+package org.n3r.idworker;
+
+/**
+ * Coordinator granting time bounded leases of worker ids, used by
+ * {@link org.n3r.idworker.strategy.LeaseWorkerIdStrategy}.
+ */
+public interface WorkerIdCoordinator {
+    /**
+     * Acquire a worker id lease for the owner.
+     *
+     * @param owner       unique owner name of the lease
+     * @param leaseMillis millis before the lease expires
+     * @return worker id, -1 when no worker id is available
+     */
+    long acquire(String owner, long leaseMillis);
+
+    /**
+     * Renew the worker id lease of the owner.
+     *
+     * @param owner       unique owner name of the lease
+     * @param workerId    leased worker id
+     * @param leaseMillis millis before the lease expires
+     * @return false when the lease is taken by others
+     */
+    boolean renew(String owner, long workerId, long leaseMillis);
+
+    /**
+     * Release the worker id lease of the owner, so it can be reused by others immediately.
+     *
+     * @param owner    unique owner name of the lease
+     * @param workerId leased worker id
+     */
+    void release(String owner, long workerId);
+}
@@ -0,0 +1,50 @@
+package org.n3r.idworker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram with the power of 2 microsecond buckets,
+ * bucket i counts the latencies in [2^(i-1), 2^i) micros, and bucket 0 counts the ones under 1 micro.
+ */
+public class Histogram {
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketOf(micros));
+        totalMicros.addAndGet(micros);
+
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) max = maxMicros.get();
+    }
+
+    static int bucketOf(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * The upper bound of the bucket in micros.
+     */
+    static long upperBoundOf(int bucket) {
+        return 1L << bucket;
+    }
+
+    long[] buckets() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) copy[i] = buckets.get(i);
+        return copy;
+    }
+
+    long totalMicros() {
+        return totalMicros.get();
+    }
+
+    long maxMicros() {
+        return maxMicros.get();
+    }
+}
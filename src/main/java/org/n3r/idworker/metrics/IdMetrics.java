@@ -0,0 +1,212 @@
+package org.n3r.idworker.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The process wide metrics of the generators, read by {@link #snapshot()} or the JMX MBean registered
+ * by {@link #registerMBean()}. The ids are counted by each worker under its own lock, and summed up
+ * by the names the workers are registered with at the snapshot, so the workers share no counter on the hot paths.
+ */
+public class IdMetrics {
+    public static final String OBJECT_NAME = "org.n3r.idworker:type=IdMetrics";
+
+    private static final ConcurrentMap<String, AtomicLong> ids = new ConcurrentHashMap<String, AtomicLong>();
+    private static final ConcurrentMap<String, Sources> sources = new ConcurrentHashMap<String, Sources>();
+    private static final AtomicLong sequenceWaits = new AtomicLong();
+    private static final AtomicLong sequenceWaitNanos = new AtomicLong();
+    private static final AtomicLong clockBackwards = new AtomicLong();
+    private static final ConcurrentMap<String, Double> codeFilterFillRatios = new ConcurrentHashMap<String, Double>();
+    private static final Histogram writeLatency = new Histogram();
+    private static final AtomicLong workerIdAcquisitions = new AtomicLong();
+    private static volatile long lastWorkerIdAcquireMillis;
+
+    static Logger logger = LoggerFactory.getLogger(IdMetrics.class);
+
+    /**
+     * A worker counting its own ids, read only at the snapshot.
+     */
+    public interface Source {
+        long idCount();
+    }
+
+    /**
+     * Count the ids of the source under the name, like IdWorker or ns.orders, until it is unregistered.
+     *
+     * @param name   generator or namespace name
+     * @param source id source
+     */
+    public static void register(String name, Source source) {
+        Sources named = sources.get(name);
+        if (named == null) {
+            Sources existing = sources.putIfAbsent(name, named = new Sources());
+            if (existing != null) named = existing;
+        }
+
+        named.live.add(source);
+    }
+
+    /**
+     * Stop reading the retired source, whose ids are kept in the count of the name.
+     *
+     * @param name   generator or namespace name
+     * @param source id source
+     */
+    public static void unregister(String name, Source source) {
+        Sources named = sources.get(name);
+        if (named != null && named.live.remove(source)) named.retired.addAndGet(source.idCount());
+    }
+
+    /**
+     * The id counter of the low rate generators, like the random code strategies, which should be kept
+     * by the generator to increase without lookups.
+     *
+     * @param generator generator name, like IdWorker
+     * @return id counter
+     */
+    public static AtomicLong idCounter(String generator) {
+        AtomicLong counter = ids.get(generator);
+        if (counter != null) return counter;
+
+        counter = new AtomicLong();
+        AtomicLong existing = ids.putIfAbsent(generator, counter);
+        return existing != null ? existing : counter;
+    }
+
+    public static void recordSequenceWait(long nanos) {
+        sequenceWaits.incrementAndGet();
+        sequenceWaitNanos.addAndGet(nanos);
+    }
+
+    public static void recordClockBackwards() {
+        clockBackwards.incrementAndGet();
+    }
+
+    public static void recordCodeFilter(String strategy, int cardinality, int capacity) {
+        codeFilterFillRatios.put(strategy, capacity <= 0 ? 0 : (double) cardinality / capacity);
+    }
+
+    public static void recordWrite(long nanos) {
+        writeLatency.record(nanos);
+    }
+
+    public static void recordWorkerIdAcquire(long millis) {
+        workerIdAcquisitions.incrementAndGet();
+        lastWorkerIdAcquireMillis = millis;
+    }
+
+    public static MetricsSnapshot snapshot() {
+        Map<String, Long> idCounts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : ids.entrySet()) idCounts.put(entry.getKey(), entry.getValue().get());
+        for (Map.Entry<String, Sources> entry : sources.entrySet()) {
+            Long count = idCounts.get(entry.getKey());
+            idCounts.put(entry.getKey(), (count == null ? 0 : count) + entry.getValue().count());
+        }
+
+        return new MetricsSnapshot(System.currentTimeMillis(), idCounts, sequenceWaits.get(), sequenceWaitNanos.get(),
+                clockBackwards.get(), new TreeMap<String, Double>(codeFilterFillRatios), writeLatency,
+                workerIdAcquisitions.get(), lastWorkerIdAcquireMillis);
+    }
+
+    /**
+     * Register the metrics as the MBean {@link #OBJECT_NAME} into the platform MBean server, if not yet.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) return;
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), name);
+        } catch (Exception e) {
+            logger.warn("register mbean {} error", OBJECT_NAME, e);
+        }
+    }
+
+    private static class Sources {
+        final Set<Source> live = Collections.newSetFromMap(new ConcurrentHashMap<Source, Boolean>());
+        final AtomicLong retired = new AtomicLong();
+
+        long count() {
+            long count = retired.get();
+            for (Source source : live) count += source.idCount();
+            return count;
+        }
+    }
+
+    static class MBean implements IdMetricsMXBean {
+        private MetricsSnapshot lastRated = snapshot();
+
+        @Override
+        public Map<String, Long> getIds() {
+            return snapshot().getIds();
+        }
+
+        @Override
+        public synchronized Map<String, Double> getIdsPerSecond() {
+            MetricsSnapshot snapshot = snapshot();
+            Map<String, Double> rates = snapshot.idsPerSecondSince(lastRated);
+            lastRated = snapshot;
+            return rates;
+        }
+
+        @Override
+        public long getSequenceWaits() {
+            return sequenceWaits.get();
+        }
+
+        @Override
+        public long getSequenceWaitMillis() {
+            return sequenceWaitNanos.get() / 1000000;
+        }
+
+        @Override
+        public long getClockBackwards() {
+            return clockBackwards.get();
+        }
+
+        @Override
+        public Map<String, Double> getCodeFilterFillRatios() {
+            return new TreeMap<String, Double>(codeFilterFillRatios);
+        }
+
+        @Override
+        public long getWrites() {
+            return snapshot().getWrites();
+        }
+
+        @Override
+        public long getWriteLatencyP50Micros() {
+            return snapshot().getWriteLatencyMicros(0.5);
+        }
+
+        @Override
+        public long getWriteLatencyP99Micros() {
+            return snapshot().getWriteLatencyMicros(0.99);
+        }
+
+        @Override
+        public long getWriteLatencyMaxMicros() {
+            return writeLatency.maxMicros();
+        }
+
+        @Override
+        public long getWorkerIdAcquisitions() {
+            return workerIdAcquisitions.get();
+        }
+
+        @Override
+        public long getLastWorkerIdAcquireMillis() {
+            return lastWorkerIdAcquireMillis;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.n3r.idworker.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link IdMetrics}, registered as org.n3r.idworker:type=IdMetrics by {@link IdMetrics#registerMBean()}.
+ */
+public interface IdMetricsMXBean {
+    Map<String, Long> getIds();
+
+    /**
+     * Ids per second of each generator since the previous call.
+     */
+    Map<String, Double> getIdsPerSecond();
+
+    long getSequenceWaits();
+
+    long getSequenceWaitMillis();
+
+    long getClockBackwards();
+
+    Map<String, Double> getCodeFilterFillRatios();
+
+    long getWrites();
+
+    long getWriteLatencyP50Micros();
+
+    long getWriteLatencyP99Micros();
+
+    long getWriteLatencyMaxMicros();
+
+    long getWorkerIdAcquisitions();
+
+    long getLastWorkerIdAcquireMillis();
+}
@@ -0,0 +1,145 @@
+package org.n3r.idworker.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of {@link IdMetrics}.
+ */
+public class MetricsSnapshot {
+    private final long timeMillis;
+    private final Map<String, Long> ids;
+    private final long sequenceWaits;
+    private final long sequenceWaitNanos;
+    private final long clockBackwards;
+    private final Map<String, Double> codeFilterFillRatios;
+    private final long[] writeLatencyBuckets;
+    private final long writeTotalMicros;
+    private final long writeMaxMicros;
+    private final long workerIdAcquisitions;
+    private final long lastWorkerIdAcquireMillis;
+
+    MetricsSnapshot(long timeMillis, Map<String, Long> ids, long sequenceWaits, long sequenceWaitNanos,
+                    long clockBackwards, Map<String, Double> codeFilterFillRatios, Histogram writeLatency,
+                    long workerIdAcquisitions, long lastWorkerIdAcquireMillis) {
+        this.timeMillis = timeMillis;
+        this.ids = Collections.unmodifiableMap(ids);
+        this.sequenceWaits = sequenceWaits;
+        this.sequenceWaitNanos = sequenceWaitNanos;
+        this.clockBackwards = clockBackwards;
+        this.codeFilterFillRatios = Collections.unmodifiableMap(codeFilterFillRatios);
+        this.writeLatencyBuckets = writeLatency.buckets();
+        this.writeTotalMicros = writeLatency.totalMicros();
+        this.writeMaxMicros = writeLatency.maxMicros();
+        this.workerIdAcquisitions = workerIdAcquisitions;
+        this.lastWorkerIdAcquireMillis = lastWorkerIdAcquireMillis;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Ids generated by each generator or namespace, like IdWorker, DayIdWorker, ns.orders and DefaultRandomCodeStrategy.
+     */
+    public Map<String, Long> getIds() {
+        return ids;
+    }
+
+    public long getIds(String generator) {
+        Long count = ids.get(generator);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Ids per second of each generator between the earlier snapshot and this one.
+     *
+     * @param earlier the earlier snapshot
+     * @return ids per second
+     */
+    public Map<String, Double> idsPerSecondSince(MetricsSnapshot earlier) {
+        double seconds = Math.max(1, timeMillis - earlier.timeMillis) / 1000.0;
+        Map<String, Double> rates = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, Long> entry : ids.entrySet()) {
+            rates.put(entry.getKey(), (entry.getValue() - earlier.getIds(entry.getKey())) / seconds);
+        }
+
+        return rates;
+    }
+
+    /**
+     * Times the sequence of a tick was used up, and the generator waited for the next tick.
+     */
+    public long getSequenceWaits() {
+        return sequenceWaits;
+    }
+
+    public long getSequenceWaitNanos() {
+        return sequenceWaitNanos;
+    }
+
+    public long getClockBackwards() {
+        return clockBackwards;
+    }
+
+    /**
+     * The used ratio of the issued code filter of each random code strategy.
+     */
+    public Map<String, Double> getCodeFilterFillRatios() {
+        return codeFilterFillRatios;
+    }
+
+    public long getWrites() {
+        long count = 0;
+        for (long bucket : writeLatencyBuckets) count += bucket;
+        return count;
+    }
+
+    public long getWriteAvgMicros() {
+        long writes = getWrites();
+        return writes == 0 ? 0 : writeTotalMicros / writes;
+    }
+
+    public long getWriteMaxMicros() {
+        return writeMaxMicros;
+    }
+
+    /**
+     * The write latency percentile, as the upper bound of the bucket it falls in.
+     *
+     * @param percentile like 0.99
+     * @return latency micros
+     */
+    public long getWriteLatencyMicros(double percentile) {
+        long writes = getWrites();
+        if (writes == 0) return 0;
+
+        long rank = (long) Math.ceil(writes * percentile);
+        long count = 0;
+        for (int i = 0; i < writeLatencyBuckets.length; ++i) {
+            count += writeLatencyBuckets[i];
+            if (count >= rank) return Math.min(Histogram.upperBoundOf(i), writeMaxMicros);
+        }
+
+        return writeMaxMicros;
+    }
+
+    public long getWorkerIdAcquisitions() {
+        return workerIdAcquisitions;
+    }
+
+    public long getLastWorkerIdAcquireMillis() {
+        return lastWorkerIdAcquireMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{ids=" + ids + ", sequenceWaits=" + sequenceWaits
+                + ", sequenceWaitMillis=" + sequenceWaitNanos / 1000000 + ", clockBackwards=" + clockBackwards
+                + ", codeFilterFillRatios=" + codeFilterFillRatios + ", writes=" + getWrites()
+                + ", writeP50Micros=" + getWriteLatencyMicros(0.5) + ", writeP99Micros=" + getWriteLatencyMicros(0.99)
+                + ", writeMaxMicros=" + writeMaxMicros + ", workerIdAcquisitions=" + workerIdAcquisitions
+                + ", lastWorkerIdAcquireMillis=" + lastWorkerIdAcquireMillis + "}";
+    }
+}
@@ -0,0 +1,187 @@
+package org.n3r.idworker.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A lightweight idworker server on the JDK HttpServer, serving the protocol used by
+ * {@link org.n3r.idworker.strategy.DefaultWorkerIdStrategy}:
+ * <ul>
+ * <li>/sync?ipu=10.142.1.151.root&amp;ids=0001,0002 registers the local worker ids of the ipu,
+ * and answers all the worker ids owned by the ipu, like 0001,0002</li>
+ * <li>/inc?ipu=10.142.1.151.root assigns a new worker id to the ipu, and answers it like 3</li>
+ * <li>/segment?name=orders&amp;size=10000 allocates a segment of ids for the name,
+ * and answers the first id inclusive and the end id exclusive, like 1,10001</li>
+ * <li>/ping answers pong, for the health probing of the clients</li>
+ * </ul>
+ * Start it by: java org.n3r.idworker.server.IdWorkerServer [port] [log file]
+ */
+public class IdWorkerServer {
+    public static final int DEFAULT_PORT = 18001;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final WorkerIdRegistry registry;
+    private final SegmentRegistry segmentRegistry;
+
+    Logger logger = LoggerFactory.getLogger(IdWorkerServer.class);
+
+    public IdWorkerServer(int port, File logFile) throws IOException {
+        this(port, new WorkerIdRegistry(logFile, 1023), new SegmentRegistry(new File(logFile.getPath() + ".segments")));
+    }
+
+    public IdWorkerServer(int port, final WorkerIdRegistry registry, final SegmentRegistry segmentRegistry) throws IOException {
+        this.registry = registry;
+        this.segmentRegistry = segmentRegistry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+
+        server.setExecutor(executor);
+        server.createContext("/sync", new Handler() {
+            @Override
+            String handle(Map<String, String> params) throws IOException {
+                List<Long> ids = registry.sync(required(params, "ipu"), parseIds(params.get("ids")));
+                StringBuilder sb = new StringBuilder();
+                for (Long id : ids) {
+                    if (sb.length() > 0) sb.append(',');
+                    sb.append(String.format("%04d", id));
+                }
+                return sb.toString();
+            }
+        });
+        server.createContext("/inc", new Handler() {
+            @Override
+            String handle(Map<String, String> params) throws IOException {
+                long wid = registry.increase(required(params, "ipu"));
+                return wid < 0 ? null : String.valueOf(wid);
+            }
+        });
+        server.createContext("/ping", new Handler() {
+            @Override
+            String handle(Map<String, String> params) {
+                return "pong";
+            }
+        });
+        server.createContext("/segment", new Handler() {
+            @Override
+            String handle(Map<String, String> params) throws IOException {
+                int size = Integer.parseInt(required(params, "size"));
+                long start = segmentRegistry.allocate(required(params, "name"), size);
+                return start + "," + (start + size);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File logFile = new File(args.length > 1 ? args[1] : "idworker-server.log");
+
+        new IdWorkerServer(port, logFile).start();
+    }
+
+    public IdWorkerServer start() {
+        server.start();
+        logger.info("idworker server started at {}", server.getAddress());
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            registry.close();
+            segmentRegistry.close();
+        } catch (IOException e) {
+            logger.warn("close registry error", e);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()) throw new IllegalArgumentException(name + " is required");
+
+        return value.trim();
+    }
+
+    static List<Long> parseIds(String ids) {
+        List<Long> result = new ArrayList<Long>();
+        if (ids == null) return result;
+
+        for (String id : ids.split(",")) {
+            if (id.trim().isEmpty()) continue;
+            result.add(Long.parseLong(id.trim()));
+        }
+
+        return result;
+    }
+
+    abstract class Handler implements HttpHandler {
+        /**
+         * Handle the request.
+         *
+         * @return response body, null for 503
+         */
+        abstract String handle(Map<String, String> params) throws IOException;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status = 200;
+            String body;
+            try {
+                body = handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+                if (body == null) {
+                    status = 503;
+                    body = "no worker id available";
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = e.getMessage();
+            } catch (Exception e) {
+                logger.warn("handle {} error", exchange.getRequestURI(), e);
+                status = 500;
+                body = String.valueOf(e.getMessage());
+            }
+
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null) return params;
+
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+
+            params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                    URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+
+        return params;
+    }
+}
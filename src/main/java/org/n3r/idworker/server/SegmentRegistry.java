@@ -0,0 +1,93 @@
+package org.n3r.idworker.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The max allocated id of each segment name, kept durable in an append only log file like:
+ * <pre>
+ * orders=10001
+ * orders=20001
+ * </pre>
+ * Every allocation is forced to disk before it is answered, and the log is replayed at startup,
+ * so a segment is never allocated twice even after the server restarts.
+ */
+public class SegmentRegistry implements Closeable {
+    public static final int MAX_SEGMENT_SIZE = 1000000;
+
+    private final Map<String, Long> maxIds = new HashMap<String, Long>();
+    private final FileChannel channel;
+
+    Logger logger = LoggerFactory.getLogger(SegmentRegistry.class);
+
+    public SegmentRegistry(File logFile) {
+        replay(logFile);
+        try {
+            channel = new FileOutputStream(logFile, true).getChannel();
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void replay(File logFile) {
+        if (!logFile.exists()) return;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.lastIndexOf('=');
+                if (eq <= 0) continue;
+
+                String name = line.substring(0, eq);
+                long maxId = Long.parseLong(line.substring(eq + 1).trim());
+                Long last = maxIds.get(name);
+                if (last == null || last < maxId) maxIds.put(name, maxId);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (NumberFormatException e) {
+            logger.warn("bad segment log in {}, the rest is ignored", logFile, e);
+        } finally {
+            if (reader != null) try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Allocate a segment of ids.
+     *
+     * @param name segment name
+     * @param size ids in the segment
+     * @return the first id of the segment, and the segment ends before first id + size
+     */
+    public synchronized long allocate(String name, int size) throws IOException {
+        if (size < 1 || size > MAX_SEGMENT_SIZE)
+            throw new IllegalArgumentException("segment size should be in [1, " + MAX_SEGMENT_SIZE + "]");
+
+        Long maxId = maxIds.get(name);
+        long start = maxId == null ? 1L : maxId;
+        long end = start + size;
+
+        channel.write(ByteBuffer.wrap((name + "=" + end + "\n").getBytes("UTF-8")));
+        channel.force(false);
+        maxIds.put(name, end);
+
+        return start;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
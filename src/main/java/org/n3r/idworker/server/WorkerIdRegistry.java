@@ -0,0 +1,129 @@
+package org.n3r.idworker.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * The worker ids owned by each ip.username (ipu), kept durable in an append only log file like:
+ * <pre>
+ * 10.142.1.151.root=1
+ * 10.142.1.152.root=2
+ * </pre>
+ * Every assignment is forced to disk before it is answered, and the log is replayed at startup.
+ */
+public class WorkerIdRegistry implements Closeable {
+    private final long maxWorkerId;
+    private final String[] owners;
+    private final Map<String, TreeSet<Long>> ownedIds = new HashMap<String, TreeSet<Long>>();
+    private final FileChannel channel;
+    private int nextFree;
+
+    Logger logger = LoggerFactory.getLogger(WorkerIdRegistry.class);
+
+    public WorkerIdRegistry(File logFile, long maxWorkerId) {
+        this.maxWorkerId = maxWorkerId;
+        this.owners = new String[(int) maxWorkerId + 1];
+
+        replay(logFile);
+        try {
+            channel = new FileOutputStream(logFile, true).getChannel();
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void replay(File logFile) {
+        if (!logFile.exists()) return;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.lastIndexOf('=');
+                if (eq <= 0) continue;
+
+                long wid = Long.parseLong(line.substring(eq + 1).trim());
+                if (wid >= 0 && wid <= maxWorkerId) own(line.substring(0, eq), wid);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (NumberFormatException e) {
+            logger.warn("bad worker id log in {}, the rest is ignored", logFile, e);
+        } finally {
+            if (reader != null) try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        logger.info("replayed {} ipus from {}", ownedIds.size(), logFile);
+    }
+
+    private void own(String ipu, long wid) {
+        owners[(int) wid] = ipu;
+        TreeSet<Long> ids = ownedIds.get(ipu);
+        if (ids == null) ownedIds.put(ipu, ids = new TreeSet<Long>());
+        ids.add(wid);
+    }
+
+    private void assign(String ipu, long wid) throws IOException {
+        byte[] line = (ipu + "=" + wid + "\n").getBytes("UTF-8");
+        channel.write(ByteBuffer.wrap(line));
+        channel.force(false);
+
+        own(ipu, wid);
+    }
+
+    /**
+     * Register the worker ids claimed by the ipu, which are not owned by others.
+     *
+     * @param ipu        ip.username
+     * @param claimedIds worker ids the ipu has locally
+     * @return all the worker ids owned by the ipu
+     */
+    public synchronized List<Long> sync(String ipu, Collection<Long> claimedIds) throws IOException {
+        for (Long wid : claimedIds) {
+            if (wid < 0 || wid > maxWorkerId) continue;
+
+            String owner = owners[wid.intValue()];
+            if (owner == null) assign(ipu, wid);
+            else if (!owner.equals(ipu)) logger.warn("worker id {} claimed by {} is owned by {}", wid, ipu, owner);
+        }
+
+        TreeSet<Long> ids = ownedIds.get(ipu);
+        return ids == null ? new ArrayList<Long>() : new ArrayList<Long>(ids);
+    }
+
+    /**
+     * Assign a new worker id to the ipu.
+     *
+     * @param ipu ip.username
+     * @return new worker id, -1 when all are used up
+     */
+    public synchronized long increase(String ipu) throws IOException {
+        while (nextFree <= maxWorkerId && owners[nextFree] != null) ++nextFree;
+        if (nextFree > maxWorkerId) return -1L;
+
+        long wid = nextFree;
+        assign(ipu, wid);
+        return wid;
+    }
+
+    public synchronized int ownedCount() {
+        int count = 0;
+        for (String owner : owners) if (owner != null) ++count;
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,175 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.Id;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The bulk exporter of the unique codes of a {@link DefaultRandomCodeStrategy} into a file, for the print campaigns
+ * of millions of codes.
+ * <p>
+ * The codes are reserved in chunks of {@link #CHUNK_CODES} in one lock acquisition, rendered into a direct buffer
+ * without any allocation per code, and rolled across the prefixes when one is full.
+ * The export stops short when no prefix can be switched to, like the full day prefix of
+ * {@link DayPrefixRandomCodeStrategy} before the day rolls.
+ * The codes filter is committed once at the end, or when the prefix is switched.
+ * The formats are:
+ * <ul>
+ * <li>CSV, one code a line like 12-003-000123, with the same zero padding as the code format %d-%03d-%06d;</li>
+ * <li>BINARY, 12 bytes a code of the big-endian int worker id, prefix and random code.</li>
+ * </ul>
+ * <pre>
+ * long exported = new CodeExporter(strategy).setCodeWidth(7).export(5000000, new File("codes.csv"));
+ * </pre>
+ */
+public class CodeExporter {
+    public enum Format {CSV, BINARY}
+
+    public static final int CHUNK_CODES = 65536;
+    static final int BUFFER_BYTES = 1 << 20;
+    static final int BINARY_RECORD_BYTES = 12;
+
+    private final DefaultRandomCodeStrategy strategy;
+    private Format format = Format.CSV;
+    private long workerId = -1;
+    private int prefixWidth = 3;
+    private int codeWidth;
+
+    Logger logger = LoggerFactory.getLogger(CodeExporter.class);
+
+    public CodeExporter(DefaultRandomCodeStrategy strategy) {
+        this.strategy = strategy;
+        this.codeWidth = strategy.maxRandomSize;
+    }
+
+    public CodeExporter setFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * The worker id in the codes, {@link Id#getWorkerId()} by default.
+     */
+    public CodeExporter setWorkerId(long workerId) {
+        this.workerId = workerId;
+        return this;
+    }
+
+    /**
+     * The zero padded width of the prefix in CSV, 3 by default, and 4 for the yyMM prefix of DayCode.
+     */
+    public CodeExporter setPrefixWidth(int prefixWidth) {
+        this.prefixWidth = prefixWidth;
+        return this;
+    }
+
+    /**
+     * The zero padded width of the random code in CSV, the max random size of the strategy by default.
+     */
+    public CodeExporter setCodeWidth(int codeWidth) {
+        this.codeWidth = codeWidth;
+        return this;
+    }
+
+    /**
+     * Export the codes into the file, which is truncated first.
+     *
+     * @param count codes to export
+     * @param file  target file
+     * @return exported codes, less than the count when the prefixes are used up
+     */
+    public long export(long count, File file) {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            return export(count, out.getChannel());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (out != null) try {
+                out.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    public long export(long count, WritableByteChannel channel) throws IOException {
+        long start = System.currentTimeMillis();
+        long wid = workerId >= 0 ? workerId : Id.getWorkerId();
+        byte[] widBytes = Long.toString(wid).getBytes();
+        int recordBytes = format == Format.BINARY ? BINARY_RECORD_BYTES
+                : widBytes.length + 1 + Math.max(prefixWidth, 11) + 1 + Math.max(codeWidth, 11) + 1;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        int[] codes = new int[(int) Math.min(CHUNK_CODES, count)];
+        long exported = 0;
+        while (exported < count) {
+            int size = (int) Math.min(codes.length, count - exported);
+            int reserved, prefix;
+            strategy.lock.lock();
+            try {
+                reserved = strategy.reserve(codes, size);
+                prefix = strategy.prefix();
+            } finally {
+                strategy.lock.unlock();
+            }
+            if (reserved == 0) {
+                logger.warn("codes of prefix {} are used up, exported {} of {} codes", prefix, exported, count);
+                break;
+            }
+
+            for (int i = 0; i < reserved; ++i) {
+                if (buffer.remaining() < recordBytes) flush(buffer, channel);
+
+                if (format == Format.BINARY) {
+                    buffer.putInt((int) wid).putInt(prefix).putInt(codes[i]);
+                } else {
+                    buffer.put(widBytes).put((byte) '-');
+                    putPadded(buffer, prefix, prefixWidth);
+                    buffer.put((byte) '-');
+                    putPadded(buffer, codes[i], codeWidth);
+                    buffer.put((byte) '\n');
+                }
+            }
+            exported += reserved;
+        }
+
+        flush(buffer, channel);
+        if (channel instanceof FileChannel) ((FileChannel) channel).force(false);
+        strategy.commit();
+
+        logger.info("exported {} codes in {} millis", exported, System.currentTimeMillis() - start);
+        return exported;
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Put the decimal digits of the non-negative value, left padded with zeros to the width.
+     */
+    static void putPadded(ByteBuffer buffer, int value, int width) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) ++digits;
+
+        for (int i = digits; i < width; ++i) buffer.put((byte) '0');
+
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= end - digits; --i) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+}
@@ -13,28 +13,73 @@ public class DayPrefixRandomCodeStrategy extends DefaultRandomCodeStrategy {
 
     @Override
     public void init() {
-        String day = createDate();
-        if (day.equals(lastDay))
-            throw new RuntimeException("init failed for day unrolled");
+        lock.lock();
+        try {
+            String day = createDate();
+            if (day.equals(lastDay))
+                throw new RuntimeException("init failed for day unrolled");
 
-        lastDay = day;
+            lastDay = day;
 
-        availableCodes.clear();
-        release();
+            availableCodes.clear();
+            release();
 
-        prefixIndex = Integer.parseInt(lastDay);
-        if (tryUsePrefix()) return;
+            prefixIndex = Integer.parseInt(lastDay);
+            if (tryUsePrefix()) return;
+        } finally {
+            lock.unlock();
+        }
 
         throw new RuntimeException("prefix is not available " + prefixIndex);
     }
 
     private String createDate() {
-        return new SimpleDateFormat(dayFormat).format(new Date());
+        return new SimpleDateFormat(dayFormat).format(new Date(currentMillis()));
+    }
+
+    /**
+     * The current millis of the day prefix, overridden by the tests driving a virtual clock.
+     *
+     * @return current millis
+     */
+    protected long currentMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * The day prefix is only switched when the day rolls, so a full day waits for the next day.
+     */
+    @Override
+    protected boolean switchPrefix() {
+        if (createDate().equals(lastDay)) return false;
+
+        init();
+        return true;
+    }
+
+    /**
+     * Reserve the codes of the current day, rolling to the new day first like {@link #next()}.
+     */
+    @Override
+    public int reserve(int[] dst, int length) {
+        lock.lock();
+        try {
+            if (lastDay != null && !lastDay.equals(createDate())) init();
+
+            return super.reserve(dst, length);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public int next() {
-        if (!lastDay.equals(createDate())) init();
+        lock.lock();
+        try {
+            if (!lastDay.equals(createDate())) init();
+        } finally {
+            lock.unlock();
+        }
 
         return super.next();
     }
@@ -2,6 +2,7 @@ package org.n3r.idworker.strategy;
 
 import org.n3r.idworker.Id;
 import org.n3r.idworker.RandomCodeStrategy;
+import org.n3r.idworker.metrics.IdMetrics;
 import org.n3r.idworker.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,9 +10,13 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.security.SecureRandom;
-import java.util.ArrayDeque;
-import java.util.BitSet;
-import java.util.Queue;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DefaultRandomCodeStrategy implements RandomCodeStrategy {
     public static final int MAX_BITS = 1000000;
@@ -34,15 +39,35 @@ public class DefaultRandomCodeStrategy implements RandomCodeStrategy {
 
     @Override
     public void init() {
-        release();
+        lock.lock();
+        try {
+            release();
 
-        while (++prefixIndex < 1000) {
-            if (tryUsePrefix()) return;
+            while (++prefixIndex < 1000) {
+                if (tryUsePrefix()) return;
+            }
+        } finally {
+            lock.unlock();
         }
 
         throw new RuntimeException("all prefixes are used up, the world maybe ends!");
     }
 
+    /**
+     * Set the directory of the prefix files instead of ~/.idworkers, before {@link #init()}.
+     *
+     * @param idWorkerHome directory of the prefix files, created when absent
+     * @return this
+     */
+    public DefaultRandomCodeStrategy setIdWorkerHome(File idWorkerHome) {
+        idWorkerHome.mkdirs();
+        if (!idWorkerHome.isDirectory())
+            throw new IllegalArgumentException("failed to create id worker home " + idWorkerHome);
+
+        this.idWorkerHome = idWorkerHome;
+        return this;
+    }
+
     public DefaultRandomCodeStrategy setMinRandomSize(int minRandomSize) {
         this.minRandomSize = minRandomSize;
         return this;
@@ -115,41 +140,246 @@ public class DefaultRandomCodeStrategy implements RandomCodeStrategy {
 
     static final int CACHE_CODES_NUM = 1000;
 
+    private static final ExecutorService refiller = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "idworker-code-refill");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     SecureRandom secureRandom = new SecureRandom();
     Queue<Integer> availableCodes = new ArrayDeque<Integer>(CACHE_CODES_NUM);
+    final AtomicLong codeCounter = IdMetrics.idCounter(metricsName(getClass()));
+
+    /**
+     * The name of the first named class, so the anonymous strategies are not counted as "".
+     */
+    private static String metricsName(Class<?> clazz) {
+        while (clazz.isAnonymousClass()) clazz = clazz.getSuperclass();
+        return clazz.getSimpleName();
+    }
 
+    /**
+     * Guards the codes filter and the available codes, and is never held during the filter persistence,
+     * except the rare prefix switching.
+     */
+    protected final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
+    private boolean refilling;
+    private int generation;
+    private long filterVersion;
+
+    /**
+     * Orders the filter writes of the refills, the commits and the release, so an older snapshot written late
+     * never overwrites a newer one. Taken after {@link #lock} when both are held.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileLock writtenTarget;
+    private long writtenVersion;
+
+    /**
+     * Next code from the available codes, which are refilled in background when half of them are used,
+     * and handed out only after the codes filter containing them is persisted.
+     */
     @Override
     public int next() {
-        if (availableCodes.isEmpty()) generate();
+        lock.lock();
+        try {
+            while (availableCodes.isEmpty()) {
+                if (refilling) {
+                    refilled.awaitUninterruptibly();
+                    continue;
+                }
+
+                refilling = true;
+                lock.unlock();
+                try {
+                    refill(true);
+                } finally {
+                    lock.lock();
+                }
+            }
+
+            if (availableCodes.size() <= CACHE_CODES_NUM / 2 && !refilling) {
+                refilling = true;
+                refiller.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            refill(false);
+                        } catch (Exception e) {
+                            log.warn("refill codes error", e);
+                        }
+                    }
+                });
+            }
 
-        return availableCodes.poll();
+            codeCounter.incrementAndGet();
+            return availableCodes.poll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized void release() {
-        if (fileLock != null) {
-            fileLock.writeObject(codesFilter);
-            fileLock.destroy();
-            fileLock = null;
+    public void release() {
+        lock.lock();
+        try {
+            ++generation; // the codes being refilled belong to the released filter
+            availableCodes.clear();
+            if (fileLock != null) {
+                persist(fileLock, codesFilter, ++filterVersion);
+                fileLock.destroy();
+                fileLock = null;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void generate() {
-        for (int i = 0; i < CACHE_CODES_NUM; ++i)
-            availableCodes.add(generateOne());
+    /**
+     * Generate a batch of codes under the lock, persist the filter outside the lock,
+     * and then make the codes available. Called with refilling set.
+     *
+     * @param switchPrefix whether to switch to the next prefix when the filter is full,
+     *                     which is left to the caller threads, so the prefix never changes in background
+     */
+    private void refill(boolean switchPrefix) {
+        try {
+            List<Integer> codes = new ArrayList<Integer>(CACHE_CODES_NUM);
+            BitSet snapshot;
+            FileLock target;
+            long version;
+            int batchGeneration;
+            lock.lock();
+            try {
+                batchGeneration = generation;
+                for (int i = 0; i < CACHE_CODES_NUM; ++i) {
+                    int code = generateOne(switchPrefix);
+                    if (code < 0) break;
+                    codes.add(code);
+                }
+                if (codes.isEmpty() && switchPrefix)
+                    throw new RuntimeException("codes of prefix " + prefixIndex + " are used up");
+
+                snapshot = (BitSet) codesFilter.clone();
+                target = fileLock;
+                version = ++filterVersion;
+                IdMetrics.recordCodeFilter(getClass().getSimpleName(), snapshot.cardinality(), max(maxRandomSize));
+            } finally {
+                lock.unlock();
+            }
 
-        fileLock.writeObject(codesFilter);
+            if (target != null) persist(target, snapshot, version);
+
+            lock.lock();
+            try {
+                if (batchGeneration == generation) availableCodes.addAll(codes);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.lock();
+            try {
+                refilling = false;
+                refilled.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
-    private int generateOne() {
+    /**
+     * Reserve the codes of the current prefix into the array, without persisting the filter,
+     * for the bulk exports which commit the filter by {@link #commit()} at the end.
+     * The prefix is switched when it is full before any code is reserved,
+     * so the caller holding {@link #lock} gets all the codes of {@link #prefix()}.
+     *
+     * @param dst    the array to fill
+     * @param length codes to reserve at most
+     * @return the number of reserved codes, less than the length when the prefix is full,
+     * and 0 when no other prefix can be switched to
+     */
+    public int reserve(int[] dst, int length) {
+        lock.lock();
+        try {
+            if (fileLock == null) init();
+
+            int count = 0;
+            while (count < length) {
+                int code = generateOne(count == 0);
+                if (code < 0) break;
+                dst[count++] = code;
+            }
+
+            codeCounter.addAndGet(count);
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Persist the codes filter of the current prefix.
+     */
+    public void commit() {
+        BitSet snapshot;
+        FileLock target;
+        long version;
+        lock.lock();
+        try {
+            if (fileLock == null) return;
+
+            snapshot = (BitSet) codesFilter.clone();
+            target = fileLock;
+            version = ++filterVersion;
+            IdMetrics.recordCodeFilter(getClass().getSimpleName(), snapshot.cardinality(), max(maxRandomSize));
+        } finally {
+            lock.unlock();
+        }
+
+        persist(target, snapshot, version);
+    }
+
+    /**
+     * Write the snapshot of the filter, unless a newer snapshot of the same file is written already.
+     */
+    private void persist(FileLock target, BitSet snapshot, long version) {
+        writeLock.lock();
+        try {
+            if (target == writtenTarget && version <= writtenVersion) {
+                log.debug("skip the older codes filter snapshot {} of {}", version, codePrefixIndex);
+                return;
+            }
+
+            target.writeObject(snapshot);
+            writtenTarget = target;
+            writtenVersion = version;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Switch to the next available prefix when the current one is full. Called under the lock.
+     *
+     * @return false when no other prefix can be used now
+     */
+    protected boolean switchPrefix() {
+        init();
+        return true;
+    }
+
+    private int generateOne(boolean switchPrefix) {
         while (true) {
             int code = secureRandom.nextInt(max(maxRandomSize));
             boolean existed = contains(code);
 
             code = !existed ? add(code) : tryFindAvailableCode(code);
-            if (code >= 0) return code;
-
-            init();
+            if (code >= 0 || !switchPrefix) return code;
+            if (!switchPrefix()) return -1;
         }
     }
 
@@ -1,55 +1,135 @@
 package org.n3r.idworker.strategy;
 
+import org.n3r.idworker.HighWaterMark;
 import org.n3r.idworker.WorkerIdStrategy;
+import org.n3r.idworker.metrics.IdMetrics;
 import org.n3r.idworker.utils.HttpReq;
 import org.n3r.idworker.utils.Ip;
 import org.n3r.idworker.utils.Props;
+import org.n3r.idworker.utils.ServerList;
 import org.n3r.idworker.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Random;
-
-public class DefaultWorkerIdStrategy implements WorkerIdStrategy {
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Worker id strategy by the lock files, like ~/.idworkers/10.142.1.151.root/lock.0001,
+ * which are kept in the directory of the ip and user name, so the lookup never scans unrelated files.
+ * The legacy lock files like ~/.idworkers/10.142.1.151.root.lock.0001 are moved into the directory once,
+ * marked by the file legacy.migrated in it, so the later initializations never scan the ~/.idworkers root,
+ * and the legacy path of the chosen worker id is locked too, so the processes of the older versions running
+ * side by side can neither take the worker id nor hold it unnoticed.
+ * <p>
+ * With bootstrap=fast in idworker-client.properties, the worker id is taken from the local paths first:
+ * the last used worker id, the available lock files and the ip based worker id, and the worker id server
+ * is only asked within the bootstrap.budget.millis (500 by default) when all of them fail.
+ * The reconciliation with the server always runs in background then, and is retried every 5 seconds until the server
+ * answers. Meanwhile the ids are issued under the local lock file, which keeps them unique on the host.
+ * The fencing is opt-in: with bootstrap.lease.millis above 0, the local worker id is leased for it, and when
+ * the server doesn't confirm it in time, {@link #availableWorkerId()} is -1 and the ids are fenced until it does,
+ * which turns a server outage into an id outage.
+ * <p>
+ * When the server answers the worker id is owned by another ip.user, the strategy switches to a worker id owned
+ * by this ip.user, or a new one from the server, and the {@link org.n3r.idworker.IdGenerator} recreates its workers.
+ * <p>
+ * The server.address could list several servers separated by comma, which are requested healthiest first
+ * and probed in background when unhealthy, see {@link ServerList}. A failed request is retried on the next server
+ * server.retries times, which is 1 with several servers and 0 with a single one by default.
+ * <p>
+ * The high-water mark of the used millis is kept in the lock file of the worker id, written every
+ * highwater.cadence.millis (100 by default) of progress, see {@link MappedHighWaterMark}.
+ * It is not forced to the disk, so it guards the restarts of the process, but not the reboots after a power loss.
+ */
+public class DefaultWorkerIdStrategy implements WorkerIdStrategy, HighWaterMark {
     static long workerIdBits = 10L;
     static long maxWorkerId = -1L ^ (-1L << workerIdBits);
     static Random random = new SecureRandom();
 
+    static final String LOCK_PREFIX = "lock.";
+    static final Pattern WORKER_ID_PATTERN = Pattern.compile("\\d{4}");
+    static final String LAST_WORKER_ID = "last";
+    static final long SYNC_RETRY_MILLIS = 5000;
+    static final String LEGACY_MIGRATED = "legacy.migrated";
+
     public static final WorkerIdStrategy instance = new DefaultWorkerIdStrategy();
 
-    private final Properties props =
-            Props.tryProperties("idworker-client.properties", Utils.DOT_IDWORKERS);
-    private final String idWorkerServerUrl =
-            props.getProperty("server.address", "http://id.worker.server:18001");
+    private final Properties props;
+    private final ServerList servers;
+    private final boolean fastBootstrap;
+    private final long bootstrapBudgetMillis;
+    private final int serverRetries;
+    private final long serverHedgeMillis;
+    private final long highWaterCadenceMillis;
+    private final long bootstrapLeaseMillis;
 
     String userName = System.getProperty("user.name");
 
     String ipDotUsername = Ip.ip + "." + userName;
     String ipudotlock = ipDotUsername + ".lock.";
-    int workerIdIndex = ipudotlock.length();
-    long workerId;
+    volatile long workerId;
     FileLock fileLock;
+    FileLock legacyLock;
+    volatile MappedHighWaterMark highWaterMark;
+    private volatile long leaseUntil = Long.MAX_VALUE;
+    private volatile boolean confirmed;
+    private volatile Thread syncThread;
 
     Logger logger = LoggerFactory.getLogger(DefaultWorkerIdStrategy.class);
     private boolean inited;
 
+    public DefaultWorkerIdStrategy() {
+        this(Props.tryProperties("idworker-client.properties", Utils.DOT_IDWORKERS));
+    }
+
+    public DefaultWorkerIdStrategy(Properties props) {
+        this.props = props;
+        this.servers = new ServerList(props.getProperty("server.address", "http://id.worker.server:18001"),
+                Long.parseLong(props.getProperty("server.probe.millis", "5000").trim()));
+        this.fastBootstrap = "fast".equalsIgnoreCase(props.getProperty("bootstrap", "sync").trim());
+        this.bootstrapBudgetMillis = Long.parseLong(props.getProperty("bootstrap.budget.millis", "500").trim());
+        // a retry only helps when it fails over to another server, it doubles the startup wait on a single one
+        this.serverRetries = Integer.parseInt(props.getProperty("server.retries", servers.size() > 1 ? "1" : "0").trim());
+        this.serverHedgeMillis = Long.parseLong(props.getProperty("server.hedge.millis", "200").trim());
+        this.highWaterCadenceMillis = Long.parseLong(props.getProperty("highwater.cadence.millis", "100").trim());
+        this.bootstrapLeaseMillis = Long.parseLong(props.getProperty("bootstrap.lease.millis", "0").trim());
+        if (bootstrapLeaseMillis < 0 || bootstrapLeaseMillis > 0 && bootstrapLeaseMillis < 3)
+            throw new IllegalArgumentException("bootstrap.lease.millis should be 0 or at least 3");
+    }
 
     private void init() {
-        workerId = findAvailWorkerId();
-        if (workerId >= 0) {
-            destroyFileLockWhenShutdown();
-            startSyncThread();
+        migrateLegacyLockFiles();
+
+        if (fastBootstrap) {
+            initFast();
         } else {
-            syncWithWorkerIdServer();
             workerId = findAvailWorkerId();
-            if (workerId < 0) workerId = increaseWithWorkerIdServer();
+            if (workerId >= 0) {
+                destroyFileLockWhenShutdown();
+                startSyncThread();
+            } else {
+                syncWithWorkerIdServer();
+                workerId = findAvailWorkerId();
+                if (workerId < 0) workerId = increaseWithWorkerIdServer();
+                if (workerId < 0) workerId = tryToCreateOnIp();
+            }
         }
 
-        if (workerId < 0) workerId = tryToCreateOnIp();
         if (workerId < 0) {
             logger.warn("DANGEROUS!!! Try to use random worker id.");
             workerId = tryToRandomOnIp(); // Try avoiding! it could cause duplicated
@@ -59,6 +139,85 @@ public class DefaultWorkerIdStrategy implements WorkerIdStrategy {
             logger.warn("the world may be ended!");
             throw new RuntimeException("the world may be ended");
         }
+
+        rememberWorkerId();
+        mapHighWaterMark();
+        if (fastBootstrap) {
+            destroyFileLockWhenShutdown();
+            startSyncThread();
+        }
+    }
+
+    private void mapHighWaterMark() {
+        try {
+            highWaterMark = new MappedHighWaterMark(fileLock, highWaterCadenceMillis);
+            logger.info("high-water mark of worker id {} is {}", workerId, highWaterMark.get());
+        } catch (RuntimeException e) {
+            logger.warn("map high-water mark error", e);
+        }
+    }
+
+    private void initFast() {
+        long start = System.currentTimeMillis();
+        leaseUntil = bootstrapLeaseMillis > 0 ? start + bootstrapLeaseMillis : Long.MAX_VALUE;
+        confirmed = false;
+
+        workerId = tryLastWorkerId();
+        if (workerId < 0) workerId = findAvailWorkerId();
+        if (workerId < 0) workerId = tryToCreateOnIp();
+        if (workerId < 0) workerId = increaseWithinBudget(start + bootstrapBudgetMillis);
+
+        logger.info("fast bootstrap worker id {} in {} millis", workerId, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Ask the worker id server for a new worker id, waiting until the deadline at most.
+     * The slow server calls are left running in background, and only the local lock is taken here.
+     */
+    private long increaseWithinBudget(long deadline) {
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                syncWithWorkerIdServer();
+                return incReq().exec();
+            }
+        });
+        Thread thread = new Thread(task, "idworker-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+
+        try {
+            String incId = task.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            long wid = findAvailWorkerId();
+            if (wid >= 0) return wid;
+            if (incId == null || incId.trim().isEmpty()) return -1L;
+
+            return checkAvail(Long.parseLong(incId.trim()));
+        } catch (TimeoutException e) {
+            logger.warn("worker id server is not responded in bootstrap budget {} millis", bootstrapBudgetMillis);
+        } catch (Exception e) {
+            logger.warn("increase with worker id server error", e);
+        }
+
+        return -1L;
+    }
+
+    private long tryLastWorkerId() {
+        File lastFile = new File(lockHome(), LAST_WORKER_ID);
+        if (!lastFile.exists()) return -1L;
+
+        String last = Utils.firstLine(lastFile);
+        if (last == null || !WORKER_ID_PATTERN.matcher(last.trim()).matches()) return -1L;
+
+        return checkAvail(Long.parseLong(last.trim()));
+    }
+
+    private void rememberWorkerId() {
+        try {
+            Utils.writeLine(new File(lockHome(), LAST_WORKER_ID), String.format("%04d", workerId));
+        } catch (IOException e) {
+            logger.warn("remember worker id error", e);
+        }
     }
 
     private void destroyFileLockWhenShutdown() {
@@ -66,24 +225,94 @@ public class DefaultWorkerIdStrategy implements WorkerIdStrategy {
             @Override
             public void run() {
                 fileLock.destroy();
+                legacyLock.destroy();
             }
         });
     }
 
+    /**
+     * Reconcile the worker id with the server in background, which is retried in the fast bootstrap
+     * until the server answers, every third of the bootstrap lease when it is leased.
+     */
     private void startSyncThread() {
-        new Thread() {
+        Thread thread = new Thread("idworker-sync") {
             @Override
             public void run() {
-                syncWithWorkerIdServer();
+                boolean warned = false;
+                while (syncThread == this) {
+                    List<Long> ownedIds = syncWithWorkerIdServer();
+                    if (ownedIds != null) {
+                        reconcile(ownedIds);
+                        return;
+                    }
+                    if (!fastBootstrap) return;
+
+                    if (!warned && System.currentTimeMillis() > leaseUntil) {
+                        logger.error("worker id {} is not confirmed by the worker id server in {} millis, " +
+                                "the ids are fenced until it is", workerId, bootstrapLeaseMillis);
+                        warned = true;
+                    }
+                    try {
+                        Thread.sleep(bootstrapLeaseMillis > 0 ? bootstrapLeaseMillis / 3 : SYNC_RETRY_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
             }
-        }.start();
+        };
+        thread.setDaemon(true);
+        syncThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Confirm the worker id by the worker ids owned by this ip.user at the server, or switch to one of them
+     * or a new one from the server when the worker id is owned by others.
+     * The worker id is -1 when no worker id can be switched to, which fences the ids.
+     *
+     * @param ownedIds worker ids owned by this ip.user at the server
+     */
+    private synchronized void reconcile(List<Long> ownedIds) {
+        if (!inited || workerId < 0) return;
+
+        if (ownedIds.contains(workerId)) {
+            confirmed = true;
+            return;
+        }
+
+        long conflicted = workerId;
+        FileLock conflictedLock = fileLock, conflictedLegacyLock = legacyLock;
+        MappedHighWaterMark conflictedMark = highWaterMark;
+
+        long wid = -1L;
+        for (int i = 0; i < ownedIds.size() && wid < 0; ++i) wid = checkAvail(ownedIds.get(i));
+        if (wid < 0) wid = increaseWithWorkerIdServer();
+        if (wid < 0) {
+            logger.error("worker id {} is owned by others at the worker id server, and no worker id is available " +
+                    "to switch to, the ids are fenced", conflicted);
+            workerId = -1L;
+        } else {
+            logger.warn("worker id {} is owned by others at the worker id server, switch to {}", conflicted, wid);
+            workerId = wid;
+            confirmed = true;
+            rememberWorkerId();
+            mapHighWaterMark();
+        }
+
+        if (conflictedMark != null) conflictedMark.close();
+        conflictedLock.destroy();
+        conflictedLegacyLock.destroy();
+    }
+
+    /**
+     * The inc request is not idempotent, so it only fails over to the next server address, without hedging.
+     */
+    private HttpReq incReq() {
+        return HttpReq.get(servers).req("/inc").param("ipu", ipDotUsername).retry(serverRetries, 100);
     }
 
     private long increaseWithWorkerIdServer() {
-        String incId = HttpReq.get(idWorkerServerUrl)
-                .req("/inc")
-                .param("ipu", ipDotUsername)
-                .exec();
+        String incId = incReq().exec();
         if (incId == null || incId.trim().isEmpty()) return -1L;
 
         long lid = Long.parseLong(incId);
@@ -111,49 +340,139 @@ public class DefaultWorkerIdStrategy implements WorkerIdStrategy {
 
     private long checkAvail(long wid) {
         logger.debug("check availability worker id {}", wid);
-        long availWorkerId = -1L;
         try {
-            File idWorkerHome = Utils.createIdWorkerHome();
-            File file = new File(idWorkerHome, ipudotlock + String.format("%04d", wid));
+            File file = new File(lockHome(), LOCK_PREFIX + String.format("%04d", wid));
             boolean newFile = file.createNewFile();
             logger.debug("try create lock file {} with result {}", file.toString(), newFile);
-            availWorkerId = findAvailWorkerId();
+            if (tryLock(file)) return wid;
         } catch (IOException e) {
             logger.warn("checkAvail error", e);
         }
 
-        return availWorkerId;
+        return -1L;
+    }
+
+    /**
+     * The directory of lock files of current ip and user, like ~/.idworkers/10.142.1.151.root.
+     */
+    private File lockHome() {
+        File lockHome = new File(Utils.createIdWorkerHome(), ipDotUsername);
+        lockHome.mkdirs();
+        if (lockHome.isDirectory()) return lockHome;
+
+        throw new RuntimeException("failed to create " + lockHome);
+    }
+
+    /**
+     * Move the legacy lock files like ~/.idworkers/10.142.1.151.root.lock.0001 into the lock home,
+     * unless they were moved before. The rename keeps the file, so the locks held by other processes are still effective.
+     */
+    private void migrateLegacyLockFiles() {
+        File lockHome = lockHome();
+        File migrated = new File(lockHome, LEGACY_MIGRATED);
+        if (migrated.exists()) return;
+
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = Files.newDirectoryStream(Utils.createIdWorkerHome().toPath(), new DirectoryStream.Filter<Path>() {
+                @Override
+                public boolean accept(Path entry) {
+                    return parseWorkerId(entry.getFileName().toString(), ipudotlock) != null;
+                }
+            });
+            for (Path legacy : stream) {
+                String wid = parseWorkerId(legacy.getFileName().toString(), ipudotlock);
+                Path target = new File(lockHome, LOCK_PREFIX + wid).toPath();
+                if (Files.exists(target)) continue;
+
+                Files.move(legacy, target, StandardCopyOption.ATOMIC_MOVE);
+                logger.info("move legacy lock file {} to {}", legacy, target);
+            }
+            migrated.createNewFile();
+        } catch (IOException e) {
+            logger.warn("migrate legacy lock files error", e);
+        } finally {
+            closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Parse the worker id from the file name like lock.0001.
+     *
+     * @return the 4 digits worker id, or null when the name does not match
+     */
+    static String parseWorkerId(String fileName, String prefix) {
+        if (fileName.length() != prefix.length() + 4 || !fileName.startsWith(prefix)) return null;
+
+        String workerId = fileName.substring(prefix.length());
+        return WORKER_ID_PATTERN.matcher(workerId).matches() ? workerId : null;
+    }
+
+    private DirectoryStream<Path> lockFiles() throws IOException {
+        return Files.newDirectoryStream(lockHome().toPath(), new DirectoryStream.Filter<Path>() {
+            @Override
+            public boolean accept(Path entry) {
+                return parseWorkerId(entry.getFileName().toString(), LOCK_PREFIX) != null;
+            }
+        });
+    }
+
+    private static void closeQuietly(DirectoryStream<Path> stream) {
+        if (stream != null) try {
+            stream.close();
+        } catch (IOException e) {
+            // ignore
+        }
     }
 
-    private void syncWithWorkerIdServer() {
-        String syncIds = HttpReq.get(idWorkerServerUrl).req("/sync")
+    /**
+     * Register the local worker ids at the server, and create the lock files of the worker ids owned at the server.
+     *
+     * @return the worker ids owned by this ip.user at the server, null when the server doesn't answer
+     */
+    private List<Long> syncWithWorkerIdServer() {
+        // sync is idempotent, so it is hedged to the other servers when one server is slow
+        String syncIds = HttpReq.get(servers).req("/sync")
                 .param("ipu", ipDotUsername).param("ids", buildWorkerIdsOfCurrentIp())
+                .retry(serverRetries, 100).hedge(serverHedgeMillis)
                 .exec();
-        if (syncIds == null || syncIds.trim().isEmpty()) return;
+        if (syncIds == null) return null;
+
+        List<Long> ownedIds = new ArrayList<Long>();
+        if (syncIds.trim().isEmpty()) return ownedIds;
 
         String[] syncIdsArr = syncIds.split(",");
-        File idWorkerHome = Utils.createIdWorkerHome();
+        File lockHome = lockHome();
         for (String syncId : syncIdsArr) {
             try {
-                new File(idWorkerHome, ipudotlock + syncId).createNewFile();
+                long wid = Long.parseLong(syncId.trim());
+                if (wid < 0 || wid > maxWorkerId) continue;
+
+                ownedIds.add(wid);
+                new File(lockHome, LOCK_PREFIX + String.format("%04d", wid)).createNewFile();
+            } catch (NumberFormatException e) {
+                logger.warn("bad synced worker id {}", syncId);
             } catch (IOException e) {
                 logger.warn("create workerid lock file error", e);
             }
         }
+
+        return ownedIds;
     }
 
     private String buildWorkerIdsOfCurrentIp() {
         StringBuilder sb = new StringBuilder();
-        File idWorkerHome = Utils.createIdWorkerHome();
-        for (File lockFile : idWorkerHome.listFiles()) {
-            // check the format like 10.142.1.151.lock.0001
-            if (!lockFile.getName().startsWith(ipudotlock)) continue;
-
-            String workerId = lockFile.getName().substring(workerIdIndex);
-            if (!workerId.matches("\\d\\d\\d\\d")) continue;
-
-            if (sb.length() > 0) sb.append(',');
-            sb.append(workerId);
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = lockFiles();
+            for (Path lockFile : stream) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(parseWorkerId(lockFile.getFileName().toString(), LOCK_PREFIX));
+            }
+        } catch (IOException e) {
+            logger.warn("list lock files error", e);
+        } finally {
+            closeQuietly(stream);
         }
 
         return sb.toString();
@@ -166,43 +485,97 @@ public class DefaultWorkerIdStrategy implements WorkerIdStrategy {
      * @return -1 when N/A
      */
     private long findAvailWorkerId() {
-        File idWorkerHome = Utils.createIdWorkerHome();
-
-        for (File lockFile : idWorkerHome.listFiles()) {
-            // check the format like 10.142.1.151.lock.0001
-            if (!lockFile.getName().startsWith(ipudotlock)) continue;
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = lockFiles();
+            for (Path lockFile : stream) {
+                // check the format like lock.0001
+                if (tryLock(lockFile.toFile()))
+                    return Long.parseLong(parseWorkerId(lockFile.getFileName().toString(), LOCK_PREFIX));
+            }
+        } catch (IOException e) {
+            logger.warn("list lock files error", e);
+        } finally {
+            closeQuietly(stream);
+        }
 
-            String workerId = lockFile.getName().substring(workerIdIndex);
-            if (!workerId.matches("\\d\\d\\d\\d")) continue;
+        return -1;
+    }
 
-            FileLock fileLock = new FileLock(lockFile);
-            if (!fileLock.tryLock()) {
-                fileLock.destroy();
-                continue;
-            }
+    private boolean tryLock(File lockFile) {
+        FileLock fileLock = new FileLock(lockFile);
+        if (!fileLock.tryLock()) {
+            fileLock.destroy();
+            return false;
+        }
 
-            this.fileLock = fileLock;
-            return Long.parseLong(workerId);
+        FileLock legacyLock = tryLockLegacy(lockFile.getName().substring(LOCK_PREFIX.length()));
+        if (legacyLock == null) {
+            fileLock.destroy();
+            return false;
         }
 
-        return -1;
+        this.fileLock = fileLock;
+        this.legacyLock = legacyLock;
+        return true;
+    }
+
+    /**
+     * Lock the legacy path like ~/.idworkers/10.142.1.151.root.lock.0001 of the worker id, which is where
+     * the older versions look for it.
+     *
+     * @return the lock, null when held by another process
+     */
+    private FileLock tryLockLegacy(String wid) {
+        File legacy = new File(Utils.createIdWorkerHome(), ipudotlock + wid);
+        FileLock legacyLock = new FileLock(legacy);
+        if (legacyLock.tryLock()) return legacyLock;
+
+        legacyLock.destroy();
+        logger.warn("worker id {} is held by the legacy lock file {}", wid, legacy);
+        return null;
     }
 
     @Override
-    public void initialize() {
+    public synchronized void initialize() {
         if (inited) return;
+        long start = System.currentTimeMillis();
         init();
+        IdMetrics.recordWorkerIdAcquire(System.currentTimeMillis() - start);
         this.inited = true;
     }
 
+    /**
+     * The worker id, which is -1 when it is owned by others without a replacement, or when the fast bootstrapped
+     * worker id is not confirmed by the server within the opt-in bootstrap lease.
+     *
+     * @return worker id
+     */
     @Override
     public long availableWorkerId() {
+        if (fastBootstrap && !confirmed && System.currentTimeMillis() > leaseUntil) return -1L;
+
         return workerId;
     }
 
     @Override
-    public void release() {
+    public long get() {
+        MappedHighWaterMark mark = highWaterMark;
+        return mark == null ? 0 : mark.get();
+    }
+
+    @Override
+    public long advance(long millis) {
+        MappedHighWaterMark mark = highWaterMark;
+        return mark == null ? millis + highWaterCadenceMillis : mark.advance(millis);
+    }
+
+    @Override
+    public synchronized void release() {
+        syncThread = null;
+        if (highWaterMark != null) highWaterMark.close();
         if (fileLock != null) fileLock.destroy();
+        if (legacyLock != null) legacyLock.destroy();
         inited = false;
     }
 }
@@ -1,6 +1,7 @@
 package org.n3r.idworker.strategy;
 
 
+import org.n3r.idworker.metrics.IdMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,6 +10,7 @@ import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A file lock a la flock/funlock
@@ -18,6 +20,7 @@ public class FileLock {
     private final File file;
     private FileChannel channel;
     private java.nio.channels.FileLock flock = null;
+    private final ReentrantLock lock = new ReentrantLock();
     Logger logger = LoggerFactory.getLogger(FileLock.class);
 
     public FileLock(File file) {
@@ -36,13 +39,14 @@ public class FileLock {
      * Lock the file or throw an exception if the lock is already held
      */
     public void lock() {
+        lock.lock();
         try {
-            synchronized (this) {
-                logger.trace("Acquiring lock on {}", file.getAbsolutePath());
-                flock = channel.lock();
-            }
+            logger.trace("Acquiring lock on {}", file.getAbsolutePath());
+            flock = channel.lock();
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -51,19 +55,20 @@ public class FileLock {
      * @return 成功或失败
      */
     public boolean tryLock() {
-        synchronized (this) {
-            logger.trace("Acquiring lock on {}", file.getAbsolutePath());
-            try {
-                // weirdly this method will return null if the lock is held by another
-                // process, but will throw an exception if the lock is held by this process
-                // so we have to handle both cases
-                flock = channel.tryLock();
-                return flock != null;
-            } catch (OverlappingFileLockException e) {
-                return false;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+        lock.lock();
+        logger.trace("Acquiring lock on {}", file.getAbsolutePath());
+        try {
+            // weirdly this method will return null if the lock is held by another
+            // process, but will throw an exception if the lock is held by this process
+            // so we have to handle both cases
+            flock = channel.tryLock();
+            return flock != null;
+        } catch (OverlappingFileLockException e) {
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -71,16 +76,17 @@ public class FileLock {
      * Unlock the lock if it is held
      */
     public void unlock() {
-        synchronized (this) {
-            logger.trace("Releasing lock on {}", file.getAbsolutePath());
+        lock.lock();
+        logger.trace("Releasing lock on {}", file.getAbsolutePath());
+        try {
             if (flock == null) return;
-            try {
-                flock.release();
-            } catch (ClosedChannelException e) {
-                // Ignore
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            flock.release();
+        } catch (ClosedChannelException e) {
+            // Ignore
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -88,19 +94,24 @@ public class FileLock {
      * Destroy this lock, closing the associated FileChannel
      */
     public void destroy() {
-        synchronized (this) {
+        lock.lock();
+        try {
             unlock();
             if (!channel.isOpen()) return;
 
-            try {
-                channel.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
 
+    FileChannel getChannel() {
+        return channel;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T readObject() {
         try {
@@ -116,17 +127,22 @@ public class FileLock {
     }
 
 
-    public synchronized boolean writeObject(Object object) {
-        if (!channel.isOpen()) return false;
-
+    public boolean writeObject(Object object) {
+        lock.lock();
         try {
+            if (!channel.isOpen()) return false;
+
+            long start = System.nanoTime();
             channel.position(0);
             OutputStream out = Channels.newOutputStream(channel);
             ObjectOutputStream objectOutput = new ObjectOutputStream(out);
             objectOutput.writeObject(object);
+            IdMetrics.recordWrite(System.nanoTime() - start);
             return true;
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 }
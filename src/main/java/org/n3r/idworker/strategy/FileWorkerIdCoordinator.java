@@ -0,0 +1,133 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.WorkerIdCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+/**
+ * A worker id coordinator keeping the leases in a local file, like:
+ * <pre>
+ * 0=10.142.1.151.root.1234@host,1418284800000
+ * 1=10.142.1.152.root.5678@host,1418284801000
+ * </pre>
+ * Every operation is done under the exclusive lock of the file, so the processes sharing the file,
+ * like the pods mounting the same volume or the tests, get unique worker ids.
+ */
+public class FileWorkerIdCoordinator implements WorkerIdCoordinator {
+    private static final Object jvmLock = new Object(); // file locks are held by the JVM, not by threads
+
+    private final File file;
+    private final long maxWorkerId;
+    Logger logger = LoggerFactory.getLogger(FileWorkerIdCoordinator.class);
+
+    public FileWorkerIdCoordinator(File file) {
+        this(file, DefaultWorkerIdStrategy.maxWorkerId);
+    }
+
+    public FileWorkerIdCoordinator(File file, long maxWorkerId) {
+        this.file = file;
+        this.maxWorkerId = maxWorkerId;
+    }
+
+    @Override
+    public long acquire(final String owner, final long leaseMillis) {
+        return update(new LeaseUpdater() {
+            @Override
+            public long update(Properties leases, long now) {
+                long free = -1L;
+                for (long wid = 0; wid <= maxWorkerId; ++wid) {
+                    String lease = leases.getProperty(String.valueOf(wid));
+                    if (lease != null && owner.equals(ownerOf(lease))) return lease(leases, wid, owner, now + leaseMillis);
+                    if (free < 0 && (lease == null || expireOf(lease) < now)) free = wid;
+                }
+
+                return free < 0 ? -1L : lease(leases, free, owner, now + leaseMillis);
+            }
+        });
+    }
+
+    @Override
+    public boolean renew(final String owner, final long workerId, final long leaseMillis) {
+        return update(new LeaseUpdater() {
+            @Override
+            public long update(Properties leases, long now) {
+                String lease = leases.getProperty(String.valueOf(workerId));
+                if (lease != null && !owner.equals(ownerOf(lease)) && expireOf(lease) >= now) return -1L;
+
+                return lease(leases, workerId, owner, now + leaseMillis);
+            }
+        }) >= 0;
+    }
+
+    @Override
+    public void release(final String owner, final long workerId) {
+        update(new LeaseUpdater() {
+            @Override
+            public long update(Properties leases, long now) {
+                String lease = leases.getProperty(String.valueOf(workerId));
+                if (lease != null && owner.equals(ownerOf(lease))) leases.remove(String.valueOf(workerId));
+
+                return workerId;
+            }
+        });
+    }
+
+    private static long lease(Properties leases, long workerId, String owner, long expire) {
+        leases.setProperty(String.valueOf(workerId), owner + "," + expire);
+        return workerId;
+    }
+
+    private static String ownerOf(String lease) {
+        return lease.substring(0, lease.lastIndexOf(','));
+    }
+
+    private static long expireOf(String lease) {
+        return Long.parseLong(lease.substring(lease.lastIndexOf(',') + 1));
+    }
+
+    interface LeaseUpdater {
+        long update(Properties leases, long now);
+    }
+
+    private long update(LeaseUpdater updater) {
+        synchronized (jvmLock) {
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel();
+                java.nio.channels.FileLock flock = channel.lock();
+                try {
+                    Properties leases = new Properties();
+                    byte[] content = new byte[(int) channel.size()];
+                    channel.read(ByteBuffer.wrap(content), 0);
+                    leases.load(new ByteArrayInputStream(content));
+
+                    long result = updater.update(leases, System.currentTimeMillis());
+
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    leases.store(out, null);
+                    channel.truncate(0);
+                    channel.write(ByteBuffer.wrap(out.toByteArray()), 0);
+                    channel.force(false);
+                    return result;
+                } finally {
+                    flock.release();
+                }
+            } catch (IOException e) {
+                logger.warn("update leases file {} error", file, e);
+                throw new RuntimeException(e);
+            } finally {
+                if (raf != null) try {
+                    raf.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
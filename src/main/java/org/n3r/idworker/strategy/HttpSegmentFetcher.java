@@ -0,0 +1,37 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.SegmentFetcher;
+import org.n3r.idworker.utils.HttpReq;
+import org.n3r.idworker.utils.ServerList;
+
+/**
+ * Fetch the id segments from the /segment of the idworker server.
+ */
+public class HttpSegmentFetcher implements SegmentFetcher {
+    private final ServerList servers;
+
+    /**
+     * Fetch from the servers, whose unhealthy ones are probed every 5 seconds.
+     *
+     * @param idWorkerServerUrl server addresses separated by commas
+     */
+    public HttpSegmentFetcher(String idWorkerServerUrl) {
+        this(new ServerList(idWorkerServerUrl));
+    }
+
+    public HttpSegmentFetcher(ServerList servers) {
+        this.servers = servers;
+    }
+
+    @Override
+    public long[] fetch(String name, int size) {
+        String segment = HttpReq.get(servers).req("/segment")
+                .param("name", name).param("size", String.valueOf(size))
+                .exec();
+        if (segment == null || segment.trim().isEmpty())
+            throw new IllegalStateException("failed to fetch segment " + name + " from " + servers);
+
+        String[] startEnd = segment.trim().split(",");
+        return new long[]{Long.parseLong(startEnd[0]), Long.parseLong(startEnd[1])};
+    }
+}
@@ -0,0 +1,247 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.utils.Serializes;
+import org.n3r.idworker.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The read-only query whether a code like 12-003-000123 of {@link org.n3r.idworker.Code} or
+ * {@link org.n3r.idworker.DayCode} was issued, by the codes filter in the prefix file like ~/.idworkers/12.code.prefix.3,
+ * for the redemption services instead of the database lookups.
+ * <p>
+ * The serialized {@link BitSet} is mapped read-only, and the long[] of its bits is located by the marker of
+ * its array class descriptor, so a query is a long read of the mapped file, which sees the filter rewritten in place
+ * by the issuing process. The files not in the expected layout are read by the {@link java.io.ObjectInputStream},
+ * and read again when a code is not found and the file is modified.
+ * The mappings are cached, and the least recently used ones are evicted above the max mappings.
+ * <p>
+ * The codes reserved but not handed out before the issuing process exits are reported as issued too,
+ * because they are never issued again.
+ */
+public class IssuedCodes {
+    /**
+     * TC_ARRAY, TC_CLASSDESC and the class name [J of long[] in the java serialization stream.
+     */
+    static final byte[] LONG_ARRAY_MARKER = {0x75, 0x72, 0x00, 0x02, 0x5B, 0x4A};
+    /**
+     * serialVersionUID, flags, field count, TC_ENDBLOCKDATA and TC_NULL super class after the marker.
+     */
+    static final int CLASS_DESC_TAIL = 8 + 1 + 2 + 1 + 1;
+    static final int MARKER_SEARCH_BYTES = 512;
+
+    private final File idWorkerHome;
+    private final Map<String, Bitmap> bitmaps;
+
+    Logger logger = LoggerFactory.getLogger(IssuedCodes.class);
+
+    public IssuedCodes() {
+        this(Utils.createIdWorkerHome(), 64);
+    }
+
+    public IssuedCodes(File idWorkerHome, final int maxMappings) {
+        this.idWorkerHome = idWorkerHome;
+        this.bitmaps = new LinkedHashMap<String, Bitmap>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bitmap> eldest) {
+                return size() > maxMappings;
+            }
+        };
+    }
+
+    /**
+     * Check whether the code like 12-003-000123 was issued.
+     *
+     * @param code code of the worker id, the prefix and the random code
+     * @return false when not issued or malformed
+     */
+    public boolean isIssued(String code) {
+        int first = code.indexOf('-');
+        int second = first < 0 ? -1 : code.indexOf('-', first + 1);
+        if (second < 0 || code.indexOf('-', second + 1) >= 0) return false;
+
+        long workerId = parse(code, 0, first);
+        long prefix = parse(code, first + 1, second);
+        long random = parse(code, second + 1, code.length());
+        if (workerId < 0 || prefix < 0 || prefix > Integer.MAX_VALUE || random < 0 || random > Integer.MAX_VALUE)
+            return false;
+
+        return isIssued(workerId, (int) prefix, (int) random);
+    }
+
+    public boolean isIssued(long workerId, int prefix, int code) {
+        String name = workerId + ".code.prefix." + prefix;
+        synchronized (bitmaps) {
+            Bitmap bitmap = bitmaps.get(name);
+            if (bitmap == null) {
+                bitmap = load(new File(idWorkerHome, name));
+                if (bitmap == null) return false;
+
+                bitmaps.put(name, bitmap);
+            }
+
+            if (bitmap.get(code)) return true;
+            if (!bitmap.isStale()) return false;
+
+            bitmap = load(bitmap.file);
+            if (bitmap == null) {
+                bitmaps.remove(name);
+                return false;
+            }
+
+            bitmaps.put(name, bitmap);
+            return bitmap.get(code);
+        }
+    }
+
+    /**
+     * Check the codes in bulk.
+     *
+     * @param codes codes like 12-003-000123
+     * @return whether each code was issued
+     */
+    public boolean[] areIssued(String[] codes) {
+        boolean[] issued = new boolean[codes.length];
+        for (int i = 0; i < codes.length; ++i) issued[i] = isIssued(codes[i]);
+        return issued;
+    }
+
+    /**
+     * Drop all the cached mappings.
+     */
+    public void clear() {
+        synchronized (bitmaps) {
+            bitmaps.clear();
+        }
+    }
+
+    private static long parse(String s, int start, int end) {
+        if (start >= end || end - start > 18) return -1;
+
+        long num = 0;
+        for (int i = start; i < end; ++i) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            num = num * 10 + (ch - '0');
+        }
+        return num;
+    }
+
+    private Bitmap load(File file) {
+        if (!file.isFile() || file.length() == 0) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            long lastModified = file.lastModified();
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int offset = findBitsOffset(buffer);
+            if (offset >= 0) return new MappedBitmap(file, lastModified, buffer, offset);
+        } catch (IOException e) {
+            logger.warn("map codes filter {} error", file, e);
+        } finally {
+            if (raf != null) try {
+                raf.close(); // the mapping is still valid after closed
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        logger.debug("read codes filter {} by object stream", file);
+        long lastModified = file.lastModified();
+        BitSet bits = Serializes.readObject(file);
+        return bits == null ? null : new ObjectBitmap(file, lastModified, bits);
+    }
+
+    /**
+     * Locate the first long of the bits array in the serialized BitSet.
+     *
+     * @return offset of the first long, -1 when not found
+     */
+    static int findBitsOffset(MappedByteBuffer buffer) {
+        int limit = Math.min(buffer.limit(), MARKER_SEARCH_BYTES) - LONG_ARRAY_MARKER.length;
+        for (int i = 0; i <= limit; ++i) {
+            int j = 0;
+            while (j < LONG_ARRAY_MARKER.length && buffer.get(i + j) == LONG_ARRAY_MARKER[j]) ++j;
+            if (j < LONG_ARRAY_MARKER.length) continue;
+
+            int lengthOffset = i + LONG_ARRAY_MARKER.length + CLASS_DESC_TAIL;
+            if (lengthOffset + 4 > buffer.limit()) return -1;
+
+            int words = buffer.getInt(lengthOffset);
+            if (words < 0 || lengthOffset + 4 + 8L * words > buffer.limit()) return -1;
+
+            return lengthOffset + 4;
+        }
+
+        return -1;
+    }
+
+    private abstract static class Bitmap {
+        final File file;
+        final long lastModified;
+
+        Bitmap(File file, long lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        abstract boolean get(int bit);
+
+        boolean isStale() {
+            return file.lastModified() != lastModified;
+        }
+    }
+
+    private static final class MappedBitmap extends Bitmap {
+        private final MappedByteBuffer buffer;
+        private final int bitsOffset;
+
+        MappedBitmap(File file, long lastModified, MappedByteBuffer buffer, int bitsOffset) {
+            super(file, lastModified);
+            this.buffer = buffer;
+            this.bitsOffset = bitsOffset;
+        }
+
+        @Override
+        boolean get(int bit) {
+            int word = bit >>> 6;
+            int words = buffer.getInt(bitsOffset - 4); // may grow when rewritten in place
+            if (word >= words || bitsOffset + (word << 3) + 8 > buffer.limit()) return false;
+
+            return (buffer.getLong(bitsOffset + (word << 3)) & (1L << bit)) != 0;
+        }
+
+        /**
+         * The mapped bits are up to date, only the growth of the file needs remapping.
+         */
+        @Override
+        boolean isStale() {
+            return super.isStale() && file.length() > buffer.limit();
+        }
+    }
+
+    private static final class ObjectBitmap extends Bitmap {
+        private final BitSet bits;
+
+        ObjectBitmap(File file, long lastModified, BitSet bits) {
+            super(file, lastModified);
+            this.bits = bits;
+        }
+
+        @Override
+        boolean get(int bit) {
+            return bits.get(bit);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.WorkerIdCoordinator;
+import org.n3r.idworker.WorkerIdStrategy;
+import org.n3r.idworker.metrics.IdMetrics;
+import org.n3r.idworker.utils.Ip;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.security.SecureRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker id strategy by a time bounded lease from a {@link WorkerIdCoordinator}.
+ * The lease is renewed in background every third of the lease millis, and given back on {@link #release()},
+ * so the worker ids of the stopped or crashed processes are reused safely after their leases expire.
+ * <p>
+ * The lease is counted locally from the start of the last successful acquire or renew. When it is lost to others
+ * or expires without a renewal, {@link #availableWorkerId()} is -1, which fences the ids of the
+ * {@link org.n3r.idworker.IdGenerator}, and the renewer acquires a lease again, with a new worker id if needed,
+ * for which the generator recreates its workers.
+ */
+public class LeaseWorkerIdStrategy implements WorkerIdStrategy {
+    private final WorkerIdCoordinator coordinator;
+    private final long leaseMillis;
+    private final String owner;
+
+    private volatile long workerId = -1L;
+    private volatile boolean leaseValid;
+    private volatile long validUntil;
+    private ScheduledExecutorService renewer;
+
+    Logger logger = LoggerFactory.getLogger(LeaseWorkerIdStrategy.class);
+
+    public LeaseWorkerIdStrategy(WorkerIdCoordinator coordinator, long leaseMillis) {
+        this(coordinator, leaseMillis, Ip.ip + "." + System.getProperty("user.name") + "."
+                + ManagementFactory.getRuntimeMXBean().getName() + "." + new SecureRandom().nextInt(Integer.MAX_VALUE));
+    }
+
+    public LeaseWorkerIdStrategy(WorkerIdCoordinator coordinator, long leaseMillis, String owner) {
+        if (leaseMillis < 3) throw new IllegalArgumentException("lease millis is too short");
+
+        this.coordinator = coordinator;
+        this.leaseMillis = leaseMillis;
+        this.owner = owner;
+    }
+
+    @Override
+    public synchronized void initialize() {
+        if (renewer != null) return;
+
+        long start = System.currentTimeMillis();
+        workerId = coordinator.acquire(owner, leaseMillis);
+        if (workerId < 0) throw new RuntimeException("no worker id lease is available for " + owner);
+        IdMetrics.recordWorkerIdAcquire(System.currentTimeMillis() - start);
+
+        validUntil = start + leaseMillis;
+        leaseValid = true;
+        logger.info("leased worker id {} for {}", workerId, owner);
+
+        renewer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "idworker-lease-renewer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long period = leaseMillis / 3;
+        renewer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                renew();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renew the lease, or acquire a lease again when it is lost.
+     */
+    private void renew() {
+        long start = System.currentTimeMillis();
+        try {
+            if (leaseValid) {
+                if (coordinator.renew(owner, workerId, leaseMillis)) {
+                    validUntil = start + leaseMillis;
+                    return;
+                }
+
+                leaseValid = false;
+                logger.error("lease of worker id {} is lost for {}, the ids are fenced until a lease is acquired again",
+                        workerId, owner);
+            }
+
+            long wid = coordinator.acquire(owner, leaseMillis);
+            if (wid < 0) {
+                logger.warn("no worker id lease is available for {}", owner);
+                return;
+            }
+
+            workerId = wid;
+            validUntil = start + leaseMillis;
+            leaseValid = true;
+            logger.info("leased worker id {} again for {}", wid, owner);
+        } catch (Exception e) {
+            logger.warn("renew lease of worker id {} error", workerId, e);
+        }
+    }
+
+    /**
+     * The leased worker id.
+     *
+     * @return -1 when the lease is lost or expired
+     */
+    @Override
+    public long availableWorkerId() {
+        if (!leaseValid || System.currentTimeMillis() >= validUntil) return -1L;
+
+        return workerId;
+    }
+
+    /**
+     * Whether the lease is held and not expired.
+     *
+     * @return false when the lease is lost or expired
+     */
+    public boolean isLeaseValid() {
+        return leaseValid && System.currentTimeMillis() < validUntil;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (renewer == null) return;
+
+        renewer.shutdownNow();
+        renewer = null;
+        leaseValid = false;
+
+        try {
+            coordinator.release(owner, workerId);
+        } catch (Exception e) {
+            logger.warn("release lease of worker id {} error", workerId, e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.n3r.idworker.strategy;
+
+import org.n3r.idworker.HighWaterMark;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The high-water mark kept in the head of the worker id lock file by mmap, as a magic long and the mark.
+ * <p>
+ * The mark is written once every cadence of the millis progress, and put one cadence ahead,
+ * so it is always larger than the used millis without a write per id. The mmap writes are in the page cache
+ * and flushed to the disk by the os, but never forced: the mark survives a process crash or kill,
+ * while a power loss or an os crash may lose the writes of its last seconds.
+ * <p>
+ * The mark is cached, as the lock file is owned by this process, so the workers read and advance it by CAS
+ * without a lock, and only the advancing one writes the mapping.
+ */
+public class MappedHighWaterMark implements HighWaterMark {
+    static final long MAGIC = 0x4944484D41524B31L; // IDHMARK1
+    static final int SIZE = 16;
+
+    private final MappedByteBuffer buffer;
+    private final long cadenceMillis;
+    private final AtomicLong mark;
+    /**
+     * Orders the mapping writes, so a smaller mark never overwrites a larger one.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile boolean closed;
+
+    Logger logger = LoggerFactory.getLogger(MappedHighWaterMark.class);
+
+    public MappedHighWaterMark(FileLock fileLock, long cadenceMillis) {
+        if (cadenceMillis < 1) throw new IllegalArgumentException("cadence millis should be positive");
+
+        try {
+            this.buffer = fileLock.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.cadenceMillis = cadenceMillis;
+        this.mark = new AtomicLong(buffer.getLong(0) == MAGIC ? buffer.getLong(8) : 0); // 0 for empty or legacy lock file
+    }
+
+    @Override
+    public long get() {
+        return mark.get();
+    }
+
+    @Override
+    public long advance(long millis) {
+        long next = millis + cadenceMillis;
+        while (true) {
+            long current = mark.get();
+            if (next <= current) return current;
+            if (closed) return next;
+            if (mark.compareAndSet(current, next)) break;
+        }
+
+        writeLock.lock();
+        try {
+            if (!closed) {
+                long latest = mark.get();
+                buffer.putLong(8, latest);
+                buffer.putLong(0, MAGIC);
+                logger.trace("advance high-water mark to {}", latest);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        return next;
+    }
+
+    public long getCadenceMillis() {
+        return cadenceMillis;
+    }
+
+    /**
+     * Stop writing when the lock file is released, which may be locked by another process then.
+     */
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,76 @@
+package org.n3r.idworker.utils;
+
+/**
+ * The Crockford base32 codec of the 128-bit values as the 26 chars ULID strings,
+ * which keeps the order of the values, and encodes into the caller's char array without allocation.
+ */
+public class Crockford {
+    public static final int ULID_LENGTH = 26;
+
+    static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; ++i) VALUES[i] = -1;
+        for (int i = 0; i < ALPHABET.length; ++i) {
+            VALUES[ALPHABET[i]] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+        // the ambiguous letters are read as the digits they look like
+        VALUES['O'] = VALUES['o'] = 0;
+        VALUES['I'] = VALUES['i'] = VALUES['L'] = VALUES['l'] = 1;
+    }
+
+    /**
+     * Encode the 128-bit value into 26 chars.
+     *
+     * @param msb    the most significant 64 bits
+     * @param lsb    the least significant 64 bits
+     * @param dst    the chars to write
+     * @param offset the first index to write
+     */
+    public static void encode(long msb, long lsb, char[] dst, int offset) {
+        for (int i = ULID_LENGTH - 1, shift = 0; i >= 0; --i, shift += 5) {
+            dst[offset + i] = ALPHABET[fiveBits(msb, lsb, shift)];
+        }
+    }
+
+    public static String encode(long msb, long lsb) {
+        char[] chars = new char[ULID_LENGTH];
+        encode(msb, lsb, chars, 0);
+        return new String(chars);
+    }
+
+    private static int fiveBits(long msb, long lsb, int shift) {
+        if (shift >= 64) return (int) (msb >>> (shift - 64)) & 31;
+        if (shift + 5 <= 64) return (int) (lsb >>> shift) & 31;
+
+        return (int) ((lsb >>> shift) | (msb << (64 - shift))) & 31;
+    }
+
+    /**
+     * Decode the 26 chars into the 128-bit value.
+     *
+     * @param s      encoded chars
+     * @param offset the first index to read
+     * @param dst    the array to write the most and the least significant 64 bits
+     * @param index  the index of dst to write the most significant 64 bits, and the least ones follow
+     */
+    public static void decode(CharSequence s, int offset, long[] dst, int index) {
+        if (s.length() - offset < ULID_LENGTH) throw new IllegalArgumentException("ulid should have 26 chars");
+
+        long msb = 0, lsb = 0;
+        for (int i = 0; i < ULID_LENGTH; ++i) {
+            char ch = s.charAt(offset + i);
+            int value = ch < VALUES.length ? VALUES[ch] : -1;
+            if (value < 0) throw new IllegalArgumentException("bad char " + ch + " at " + (offset + i));
+            if (i == 0 && value > 7) throw new IllegalArgumentException("ulid overflows 128 bits");
+
+            msb = (msb << 5) | (lsb >>> 59);
+            lsb = (lsb << 5) | value;
+        }
+
+        dst[index] = msb;
+        dst[index + 1] = lsb;
+    }
+}
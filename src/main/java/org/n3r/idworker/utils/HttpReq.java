@@ -8,21 +8,67 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * A tiny http get client.
+ * <p>
+ * The base url could be a comma separated list of server addresses, like http://a:18001,http://b:18001,
+ * which are tried one by one on failures, or raced by {@link #hedge(long)}.
+ * The connections are kept alive and reused by the JDK, because the response streams are always drained and closed.
+ */
 public class HttpReq {
-    private final String baseUrl;
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "idworker-http-" + seq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final String[] baseUrls;
+    private final ServerList servers;
     private String req;
     private StringBuilder params = new StringBuilder();
+    private int connectTimeoutMillis = 5 * 1000;
+    private int readTimeoutMillis = 5 * 1000;
+    private int retries;
+    private long backoffMillis = 100;
+    private long hedgeDelayMillis;
+    private boolean quiet;
     Logger logger = LoggerFactory.getLogger(HttpReq.class);
 
     public HttpReq(String baseUrl) {
-        this.baseUrl = baseUrl;
+        this.baseUrls = baseUrl.split(",");
+        for (int i = 0; i < baseUrls.length; ++i) baseUrls[i] = baseUrls[i].trim();
+        this.servers = null;
+    }
+
+    /**
+     * Request the healthiest server first, and record the outcomes into the server list.
+     *
+     * @param servers server list
+     */
+    public HttpReq(ServerList servers) {
+        this.baseUrls = null;
+        this.servers = servers;
+        this.quiet = true; // the server list warns on the health changes instead
     }
 
     public static HttpReq get(String baseUrl) {
         return new HttpReq(baseUrl);
     }
 
+    public static HttpReq get(ServerList servers) {
+        return new HttpReq(servers);
+    }
+
     public HttpReq req(String req) {
         this.req = req;
         return this;
@@ -39,16 +85,141 @@ public class HttpReq {
         return this;
     }
 
+    public HttpReq timeout(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Retry the failed request, with the backoff doubled after each retry.
+     *
+     * @param retries       max retries
+     * @param backoffMillis first backoff
+     * @return this
+     */
+    public HttpReq retry(int retries, long backoffMillis) {
+        this.retries = retries;
+        this.backoffMillis = backoffMillis;
+        return this;
+    }
+
+    /**
+     * Log the failures at debug only, for the requests whose failures are reported by the caller.
+     *
+     * @return this
+     */
+    HttpReq quiet() {
+        this.quiet = true;
+        return this;
+    }
+
+    /**
+     * Send the same request to the next server address when there is no response in the delay,
+     * and take the first successful response. Only for the idempotent requests.
+     *
+     * @param hedgeDelayMillis delay before the next server is asked
+     * @return this
+     */
+    public HttpReq hedge(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        return this;
+    }
+
+    /**
+     * Execute the request.
+     *
+     * @return response body, null on failure
+     */
     public String exec() {
-        HttpURLConnection http = null;
+        String[] baseUrls = servers != null ? servers.ordered() : this.baseUrls;
+        long backoff = backoffMillis;
+        for (int attempt = 0; ; ++attempt) {
+            String result = hedgeDelayMillis > 0 && baseUrls.length > 1
+                    ? execHedged(baseUrls) : execOnce(baseUrls[attempt % baseUrls.length]);
+            if (result != null || attempt >= retries) return result;
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * Execute the request in background.
+     *
+     * @return future of the response body, which is null on failure
+     */
+    public Future<String> execAsync() {
+        return executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return exec();
+            }
+        });
+    }
+
+    private String execHedged(String[] baseUrls) {
+        CompletionService<String> completion = new ExecutorCompletionService<String>(executor);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        futures.add(completion.submit(execCall(baseUrls[0])));
+        int done = 0;
+        try {
+            while (done < futures.size()) {
+                Future<String> future = futures.size() < baseUrls.length
+                        ? completion.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS) : completion.take();
+                if (future == null) { // too slow, hedge to the next server
+                    futures.add(completion.submit(execCall(baseUrls[futures.size()])));
+                    continue;
+                }
+
+                ++done;
+                String result = future.get();
+                if (result != null) return result;
+                if (futures.size() < baseUrls.length)
+                    futures.add(completion.submit(execCall(baseUrls[futures.size()])));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("exec error {}", e.getMessage());
+        } finally {
+            for (Future<String> future : futures) future.cancel(true);
+        }
+
+        return null;
+    }
+
+    private Callable<String> execCall(final String baseUrl) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return execOnce(baseUrl);
+            }
+        };
+    }
+
+    private String execOnce(String baseUrl) {
+        long start = System.currentTimeMillis();
+        String result = execOnce0(baseUrl);
+        if (servers != null) servers.record(baseUrl, System.currentTimeMillis() - start, result != null);
+
+        return result;
+    }
+
+    private String execOnce0(String baseUrl) {
         try {
-            http = (HttpURLConnection) new URL(baseUrl
+            HttpURLConnection http = (HttpURLConnection) new URL(baseUrl
                     + (req == null ? "" : req)
                     + (params.length() > 0 ? ("?" + params) : "")).openConnection();
             http.setRequestProperty("Accept-Charset", "UTF-8");
-            HttpURLConnection.setFollowRedirects(false);
-            http.setConnectTimeout(5 * 1000);
-            http.setReadTimeout(5 * 1000);
+            http.setInstanceFollowRedirects(false);
+            http.setConnectTimeout(connectTimeoutMillis);
+            http.setReadTimeout(readTimeoutMillis);
             http.connect();
 
             int status = http.getResponseCode();
@@ -57,22 +228,22 @@ public class HttpReq {
             if (status == 200) {
                 return readResponseBody(http, charset);
             } else {
-                logger.warn("non 200 respoonse :" + readErrorResponseBody(http, status, charset));
+                String error = readErrorResponseBody(http, status, charset);
+                if (quiet) logger.debug("non 200 respoonse :{}", error);
+                else logger.warn("non 200 respoonse :" + error);
                 return null;
             }
         } catch (Exception e) {
-            logger.error("exec error {}", e.getMessage());
+            if (quiet) logger.debug("exec error {} {}", baseUrl, e.getMessage());
+            else logger.error("exec error {}", e.getMessage());
             return null;
-        } finally {
-            if (http != null) http.disconnect();
         }
-
     }
 
     private static String readErrorResponseBody(HttpURLConnection http, int status, String charset) throws IOException {
         InputStream errorStream = http.getErrorStream();
         if (errorStream != null) {
-            String error = toString(charset, errorStream);
+            String error = toString(charset, errorStream); // drain it for the connection reuse
             return ("STATUS CODE =" + status + "\n\n" + error);
         } else {
             return ("STATUS CODE =" + status);
@@ -89,9 +260,13 @@ public class HttpReq {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         byte[] buffer = new byte[1024];
 
-        int length;
-        while ((length = inputStream.read(buffer)) != -1) {
-            baos.write(buffer, 0, length);
+        try {
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                baos.write(buffer, 0, length);
+            }
+        } finally {
+            inputStream.close();
         }
 
         return new String(baos.toByteArray(), charset);
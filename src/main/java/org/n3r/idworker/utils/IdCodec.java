@@ -0,0 +1,200 @@
+package org.n3r.idworker.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary codecs of the ids, which write into and read from the caller's byte[] or {@link ByteBuffer}
+ * without allocation:
+ * <ul>
+ * <li>fixed 8 bytes big-endian, whose unsigned byte order is the order of the non-negative ids,
+ * like the kafka keys;</li>
+ * <li>varint of 1 to 10 bytes, 7 bits a byte with the lowest group first, and the zigzag varint
+ * for the values which may be negative;</li>
+ * <li>fixed 14 chars base-28 in the ascii bytes with the alphabet of {@link Utils#encode(long)},
+ * which keeps the order of the non-negative ids too.</li>
+ * </ul>
+ * The byte[] writers return the index after the last written byte, and the {@link ByteBuffer} ones
+ * read and write at its position, whatever its byte order is.
+ */
+public class IdCodec {
+    public static final int LONG_BYTES = 8;
+    public static final int MAX_VARINT_BYTES = 10;
+    public static final int BASE28_LENGTH = 14; // 28^14 > 2^63
+
+    private static final byte[] BASE28_DIGITS = Utils.defaultRange.getBytes();
+    private static final byte[] BASE28_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < BASE28_VALUES.length; ++i) BASE28_VALUES[i] = -1;
+        for (int i = 0; i < BASE28_DIGITS.length; ++i) BASE28_VALUES[BASE28_DIGITS[i]] = (byte) i;
+    }
+
+    public static int writeLong(long id, byte[] dst, int offset) {
+        for (int i = LONG_BYTES - 1; i >= 0; --i) {
+            dst[offset + i] = (byte) id;
+            id >>>= 8;
+        }
+        return offset + LONG_BYTES;
+    }
+
+    public static long readLong(byte[] src, int offset) {
+        long id = 0;
+        for (int i = 0; i < LONG_BYTES; ++i) id = (id << 8) | (src[offset + i] & 0xFF);
+        return id;
+    }
+
+    public static void putLong(ByteBuffer dst, long id) {
+        for (int shift = 56; shift >= 0; shift -= 8) dst.put((byte) (id >>> shift));
+    }
+
+    public static long getLong(ByteBuffer src) {
+        long id = 0;
+        for (int i = 0; i < LONG_BYTES; ++i) id = (id << 8) | (src.get() & 0xFF);
+        return id;
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * The bytes of the varint.
+     *
+     * @param value value
+     * @return 1 to 10
+     */
+    public static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) ++size;
+        return size;
+    }
+
+    public static int writeVarint(long value, byte[] dst, int offset) {
+        while ((value & ~0x7FL) != 0) {
+            dst[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Read the varint at the offset, whose length is {@link #varintSize(long)} of the result.
+     *
+     * @param src    bytes
+     * @param offset the first byte of the varint
+     * @return value
+     */
+    public static long readVarint(byte[] src, int offset) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = src[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+
+        throw new IllegalArgumentException("malformed varint longer than " + MAX_VARINT_BYTES + " bytes");
+    }
+
+    public static void putVarint(ByteBuffer dst, long value) {
+        while ((value & ~0x7FL) != 0) {
+            dst.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    public static long getVarint(ByteBuffer src) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = src.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+
+        throw new IllegalArgumentException("malformed varint longer than " + MAX_VARINT_BYTES + " bytes");
+    }
+
+    public static int writeZigzag(long value, byte[] dst, int offset) {
+        return writeVarint(zigzag(value), dst, offset);
+    }
+
+    public static long readZigzag(byte[] src, int offset) {
+        return unzigzag(readVarint(src, offset));
+    }
+
+    public static void putZigzag(ByteBuffer dst, long value) {
+        putVarint(dst, zigzag(value));
+    }
+
+    public static long getZigzag(ByteBuffer src) {
+        return unzigzag(getVarint(src));
+    }
+
+    /**
+     * Write the id as {@link #BASE28_LENGTH} ascii bytes, padded with the leading zeros.
+     *
+     * @param id     non-negative id
+     * @param dst    bytes to write
+     * @param offset the first index to write
+     * @return the index after the last written byte
+     */
+    public static int writeBase28(long id, byte[] dst, int offset) {
+        if (id < 0) throw new IllegalArgumentException("id should be non-negative, but " + id);
+
+        final int base = BASE28_DIGITS.length;
+        for (int i = offset + BASE28_LENGTH - 1; i >= offset; --i) {
+            dst[i] = BASE28_DIGITS[(int) (id % base)];
+            id /= base;
+        }
+        return offset + BASE28_LENGTH;
+    }
+
+    /**
+     * Read the base-28 ascii bytes, of the fixed length or the unpadded ones of {@link Utils#encode(long)}.
+     *
+     * @param src    bytes
+     * @param offset the first index to read
+     * @param length bytes to read
+     * @return id
+     */
+    public static long readBase28(byte[] src, int offset, int length) {
+        final int base = BASE28_DIGITS.length;
+        long id = 0;
+        for (int i = offset; i < offset + length; ++i) id = id * base + base28Value(src[i], i);
+        return id;
+    }
+
+    public static void putBase28(ByteBuffer dst, long id) {
+        if (id < 0) throw new IllegalArgumentException("id should be non-negative, but " + id);
+
+        final int base = BASE28_DIGITS.length;
+        int start = dst.position();
+        for (int i = start + BASE28_LENGTH - 1; i >= start; --i) {
+            dst.put(i, BASE28_DIGITS[(int) (id % base)]);
+            id /= base;
+        }
+        dst.position(start + BASE28_LENGTH);
+    }
+
+    public static long getBase28(ByteBuffer src, int length) {
+        final int base = BASE28_DIGITS.length;
+        long id = 0;
+        for (int i = 0; i < length; ++i) {
+            int index = src.position();
+            id = id * base + base28Value(src.get(), index);
+        }
+        return id;
+    }
+
+    private static int base28Value(byte b, int index) {
+        int value = b < 0 ? -1 : BASE28_VALUES[b];
+        if (value < 0) throw new IllegalArgumentException("bad base-28 byte " + b + " at " + index);
+
+        return value;
+    }
+}
@@ -0,0 +1,219 @@
+package org.n3r.idworker.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The idworker server addresses, like http://a:18001,http://b:18001, with passive health tracking.
+ * <p>
+ * Every request outcome is recorded by {@link HttpReq}: the latency goes into an EWMA, and the consecutive
+ * errors mark a server unhealthy. {@link #ordered()} puts the healthy servers first by their latency,
+ * and the unhealthy servers are probed by /ping in background, with the interval doubled after each failed probe
+ * up to {@link #MAX_PROBE_MILLIS}, until they answer again or a real request to them succeeds.
+ * <p>
+ * A warning is logged once when a server turns unhealthy and once when it is healthy again,
+ * and the failed requests themselves are logged at debug only.
+ */
+public class ServerList {
+    public static final int UNHEALTHY_ERRORS = 3;
+    public static final long MAX_PROBE_MILLIS = 60000;
+    static final double EWMA_ALPHA = 0.3;
+
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "idworker-server-prober");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Server[] servers;
+    private final long probeIntervalMillis;
+
+    Logger logger = LoggerFactory.getLogger(ServerList.class);
+
+    public ServerList(String addresses) {
+        this(addresses, 5000);
+    }
+
+    public ServerList(String addresses, long probeIntervalMillis) {
+        String[] split = addresses.split(",");
+        List<Server> list = new ArrayList<Server>(split.length);
+        for (String address : split) {
+            if (!address.trim().isEmpty()) list.add(new Server(address.trim()));
+        }
+        if (list.isEmpty()) throw new IllegalArgumentException("no server address in " + addresses);
+
+        this.servers = list.toArray(new Server[list.size()]);
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * The server addresses, healthiest first.
+     *
+     * @return addresses
+     */
+    public String[] ordered() {
+        Server[] sorted = servers.clone();
+        Arrays.sort(sorted, new Comparator<Server>() {
+            @Override
+            public int compare(Server a, Server b) {
+                boolean healthyA = a.isHealthy(), healthyB = b.isHealthy();
+                if (healthyA != healthyB) return healthyA ? -1 : 1;
+
+                return Double.compare(a.ewmaMillis, b.ewmaMillis);
+            }
+        });
+
+        String[] addresses = new String[sorted.length];
+        for (int i = 0; i < sorted.length; ++i) addresses[i] = sorted[i].address;
+        return addresses;
+    }
+
+    /**
+     * Record a request outcome.
+     *
+     * @param address server address
+     * @param millis  request latency
+     * @param success whether the request succeeded
+     */
+    public void record(String address, long millis, boolean success) {
+        Server server = find(address);
+        if (server == null) return;
+
+        if (!server.record(millis, success)) return;
+
+        if (success) {
+            logger.warn("idworker server {} is healthy again", server.address);
+        } else {
+            logger.warn("idworker server {} is unhealthy after {} errors, start probing", server.address, UNHEALTHY_ERRORS);
+            startProbe(server);
+        }
+    }
+
+    private Server find(String address) {
+        for (Server server : servers) {
+            if (server.address.equals(address)) return server;
+        }
+
+        return null;
+    }
+
+    private void startProbe(final Server server) {
+        if (!server.probing.compareAndSet(false, true)) return;
+
+        final int round = server.probeRounds.incrementAndGet();
+        prober.schedule(new Runnable() {
+            long delayMillis = probeIntervalMillis;
+
+            @Override
+            public void run() {
+                // stopped by a successful request, or superseded by a later round
+                if (!server.probing.get() || server.probeRounds.get() != round) return;
+
+                String pong = HttpReq.get(server.address).req("/ping").timeout(1000, 1000).quiet().exec();
+                if (pong != null) {
+                    if (server.recover()) logger.warn("idworker server {} is healthy again", server.address);
+                } else {
+                    delayMillis = Math.min(delayMillis * 2, Math.max(probeIntervalMillis, MAX_PROBE_MILLIS));
+                    prober.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int size() {
+        return servers.length;
+    }
+
+    public boolean isHealthy(String address) {
+        Server server = find(address);
+        return server != null && server.isHealthy();
+    }
+
+    public boolean isProbing(String address) {
+        Server server = find(address);
+        return server != null && server.probing.get();
+    }
+
+    public double getEwmaMillis(String address) {
+        Server server = find(address);
+        return server == null ? -1 : server.ewmaMillis;
+    }
+
+    public long getErrors(String address) {
+        Server server = find(address);
+        return server == null ? -1 : server.errors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ServerList{");
+        for (Server server : servers) {
+            if (sb.length() > 11) sb.append(", ");
+            sb.append(server.address).append(server.isHealthy() ? "(healthy " : "(unhealthy ")
+                    .append((long) server.ewmaMillis).append("ms, ").append(server.errors).append(" errors)");
+        }
+        return sb.append('}').toString();
+    }
+
+    static final class Server {
+        final String address;
+        final AtomicBoolean probing = new AtomicBoolean();
+        final AtomicInteger probeRounds = new AtomicInteger();
+        volatile double ewmaMillis;
+        volatile int consecutiveErrors;
+        volatile long errors;
+
+        Server(String address) {
+            this.address = address;
+        }
+
+        /**
+         * Record the outcome, and a success stops the probing.
+         *
+         * @return true when the health changes
+         */
+        synchronized boolean record(long millis, boolean success) {
+            boolean healthy = isHealthy();
+            ewmaMillis = ewmaMillis == 0 ? millis : EWMA_ALPHA * millis + (1 - EWMA_ALPHA) * ewmaMillis;
+            if (success) {
+                consecutiveErrors = 0;
+                probing.set(false);
+            } else {
+                ++consecutiveErrors;
+                ++errors;
+            }
+            return healthy != isHealthy();
+        }
+
+        /**
+         * Recover after a successful probe.
+         *
+         * @return true when it was unhealthy
+         */
+        synchronized boolean recover() {
+            boolean healthy = isHealthy();
+            consecutiveErrors = 0;
+            ewmaMillis = 0;
+            probing.set(false);
+            return !healthy;
+        }
+
+        boolean isHealthy() {
+            return consecutiveErrors < UNHEALTHY_ERRORS;
+        }
+    }
+}
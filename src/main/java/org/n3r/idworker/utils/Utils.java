@@ -38,6 +38,33 @@ public class Utils {
         }
     }
 
+    public static String firstLine(File file) {
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+
+            return bufferedReader.readLine();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (inputStream != null) try {
+                inputStream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    public static void writeLine(File file, String line) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write((line + "\n").getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+
     public static String checkNotEmpty(String param, String name) {
         if (param == null || param.isEmpty())
             throw new IllegalArgumentException(name + " is empty");
@@ -74,6 +101,26 @@ public class Utils {
         return num;
     }
 
+    /**
+     * Decode the part [start, end) of the chars encoded by {@link #encode(long)} without allocation.
+     *
+     * @param s     encoded chars
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return decoded number
+     */
+    public static long decode(CharSequence s, int start, int end) {
+        final int B = defaultRange.length();
+        long num = 0;
+        for (int i = start; i < end; ++i) {
+            int digit = defaultRange.indexOf(s.charAt(i));
+            if (digit < 0) throw new IllegalArgumentException("bad char " + s.charAt(i) + " at " + i);
+
+            num = num * B + digit;
+        }
+        return num;
+    }
+
     public static String encode(long num) {
         return encode(num, defaultRange);
     }
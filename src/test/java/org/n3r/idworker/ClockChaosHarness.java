@@ -0,0 +1,249 @@
+package org.n3r.idworker;
+
+import org.n3r.idworker.strategy.DayPrefixRandomCodeStrategy;
+import org.n3r.idworker.utils.Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * The deterministic virtual clock harness driving {@link IdWorker}, the Sid {@link DayIdWorker} and
+ * {@link DayPrefixRandomCodeStrategy} through the scripted time scenarios at full speed:
+ * backward and forward jumps, the leap second by a step or by a smear, and the midnight and month rollover.
+ * <p>
+ * The virtual clock moves one milli every {@link Phase#readsPerMilli} reads, so it is the same on every run.
+ * The rejected calls under a backward clock are counted in the {@link Mode#REJECT} mode, and waited out by moving
+ * the virtual clock to the last millis of the worker in the {@link Mode#WAIT} mode, whose stall is counted
+ * in the virtual millis. The duplicates and the ordering violations are counted over all the generated values.
+ */
+public class ClockChaosHarness {
+    static final File codeHome = new File(System.getProperty("java.io.tmpdir"),
+            "idworker-chaos" + File.separator + Utils.DOT_IDWORKERS);
+
+    enum Target {ID, SID, DAY_CODE}
+
+    enum Mode {REJECT, WAIT}
+
+    /**
+     * The clock read by the generators, moving one milli every readsPerMilli reads.
+     */
+    static class VirtualClock {
+        private long millis;
+        private int readsPerMilli = 100;
+        private int reads;
+
+        VirtualClock(long millis) {
+            this.millis = millis;
+        }
+
+        long now() {
+            if (++reads >= readsPerMilli) {
+                reads = 0;
+                ++millis;
+            }
+            return millis;
+        }
+
+        void jump(long delta) {
+            millis += delta;
+        }
+
+        void advanceTo(long target) {
+            if (target > millis) millis = target;
+        }
+    }
+
+    /**
+     * A phase of the scenario: jump the clock first, then make the calls at the clock rate.
+     */
+    static class Phase {
+        final long jumpMillis;
+        final int readsPerMilli;
+        final int calls;
+
+        Phase(long jumpMillis, int readsPerMilli, int calls) {
+            this.jumpMillis = jumpMillis;
+            this.readsPerMilli = readsPerMilli;
+            this.calls = calls;
+        }
+    }
+
+    static class Scenario {
+        final String name;
+        final long startMillis;
+        final List<Phase> phases = new ArrayList<Phase>();
+
+        Scenario(String name, long startMillis) {
+            this.name = name;
+            this.startMillis = startMillis;
+        }
+
+        Scenario phase(long jumpMillis, int readsPerMilli, int calls) {
+            phases.add(new Phase(jumpMillis, readsPerMilli, calls));
+            return this;
+        }
+    }
+
+    static class Result {
+        final String scenario;
+        final Target target;
+        final Mode mode;
+        long generated, rejected, stallMillis, duplicates, orderViolations, nanos;
+
+        Result(String scenario, Target target, Mode mode) {
+            this.scenario = scenario;
+            this.target = target;
+            this.mode = mode;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-14s %-8s %-6s generated %7d, %8d/s, rejected %6d, stall %5d ms, duplicates %d, order violations %d",
+                    scenario, target, mode, generated, generated * 1000000000L / Math.max(1, nanos),
+                    rejected, stallMillis, duplicates, orderViolations);
+        }
+    }
+
+    /**
+     * The scenarios starting at 2020-01-31 23:59:58 local time, so the long ones cross the midnight and the month.
+     */
+    static List<Scenario> scenarios() {
+        long start = localMillis(2020, Calendar.JANUARY, 31, 23, 59, 58);
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+        scenarios.add(new Scenario("steady", start).phase(0, 100, 100000));
+        scenarios.add(new Scenario("burst", start).phase(0, 10000, 100000));
+        // one read a milli after the backward jumps, to keep the rejected calls and their error logs few
+        scenarios.add(new Scenario("backward-2s", start).phase(0, 100, 50000).phase(-2000, 1, 20000));
+        scenarios.add(new Scenario("forward-1h", start).phase(0, 100, 50000).phase(3600000, 100, 50000));
+        scenarios.add(new Scenario("leap-step", start).phase(0, 100, 50000).phase(-1000, 1, 20000));
+        scenarios.add(new Scenario("leap-smear", start).phase(0, 100, 50000).phase(0, 200, 150000).phase(0, 100, 50000));
+        scenarios.add(new Scenario("midnight", start).phase(0, 100, 400000));
+        scenarios.add(new Scenario("midnight-back", start + 2500).phase(0, 100, 50000).phase(-1000, 1, 20000));
+        return scenarios;
+    }
+
+    static long localMillis(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
+    static List<Result> runAll() {
+        List<Result> results = new ArrayList<Result>();
+        for (Scenario scenario : scenarios()) {
+            for (Target target : Target.values()) {
+                for (Mode mode : Mode.values()) results.add(run(scenario, target, mode));
+            }
+        }
+        return results;
+    }
+
+    static Result run(Scenario scenario, Target target, Mode mode) {
+        final VirtualClock clock = new VirtualClock(scenario.startMillis);
+        Result result = new Result(scenario.name, target, mode);
+        int total = 0;
+        for (Phase phase : scenario.phases) total += phase.calls;
+        OffHeapLongSet values = new OffHeapLongSet(total);
+
+        IdWorker worker = null;
+        DayPrefixRandomCodeStrategy codeStrategy = null;
+        if (target == Target.ID) {
+            worker = new IdWorker(1) {
+                @Override
+                protected long millisGen() {
+                    return clock.now();
+                }
+            };
+        } else if (target == Target.SID) {
+            worker = new DayIdWorker(1) {
+                @Override
+                protected long millisGen() {
+                    return clock.now();
+                }
+            };
+        } else {
+            codeStrategy = createCodeStrategy(clock);
+            codeStrategy.setMinRandomSize(7);
+            codeStrategy.setMaxRandomSize(7);
+            codeStrategy.init();
+        }
+
+        long start = System.nanoTime();
+        long last = Long.MIN_VALUE;
+        try {
+            for (Phase phase : scenario.phases) {
+                clock.jump(phase.jumpMillis);
+                clock.readsPerMilli = phase.readsPerMilli;
+                for (int i = 0; i < phase.calls; ++i) {
+                    long value;
+                    try {
+                        value = next(target, worker, codeStrategy);
+                    } catch (InvalidSystemClock e) {
+                        if (mode == Mode.REJECT) {
+                            ++result.rejected;
+                            continue;
+                        }
+
+                        long now = clock.millis;
+                        clock.advanceTo(worker.getLastMillis());
+                        result.stallMillis += clock.millis - now;
+                        value = next(target, worker, codeStrategy);
+                    }
+
+                    ++result.generated;
+                    if (!values.add(value)) ++result.duplicates;
+                    if (target != Target.DAY_CODE && value <= last) ++result.orderViolations;
+                    last = value;
+                }
+            }
+        } finally {
+            if (codeStrategy != null) {
+                codeStrategy.release();
+                deleteRecursively(codeHome);
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+    /**
+     * Create the strategy with the prefix files in a temp ~/.idworkers, so the virtual months don't use up
+     * the prefixes of the real home.
+     */
+    private static DayPrefixRandomCodeStrategy createCodeStrategy(final VirtualClock clock) {
+        DayPrefixRandomCodeStrategy strategy = new DayPrefixRandomCodeStrategy("yyMM") {
+            @Override
+            protected long currentMillis() {
+                return clock.now();
+            }
+        };
+        strategy.setIdWorkerHome(codeHome);
+        return strategy;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteRecursively(child);
+        file.delete();
+    }
+
+    private static long next(Target target, IdWorker worker, DayPrefixRandomCodeStrategy codeStrategy) {
+        switch (target) {
+            case ID:
+                return worker.nextId();
+            case SID:
+                return UniquenessHarness.packSid(((DayIdWorker) worker).next());
+            default:
+                int code = codeStrategy.next();
+                return (long) codeStrategy.prefix() << 32 | code;
+        }
+    }
+
+    public static void main(String[] args) {
+        for (Result result : runAll()) System.out.println(result);
+    }
+}
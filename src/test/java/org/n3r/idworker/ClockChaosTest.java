@@ -0,0 +1,47 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ClockChaosTest {
+
+    @Test
+    public void scenarios() {
+        List<ClockChaosHarness.Result> results = ClockChaosHarness.runAll();
+        for (ClockChaosHarness.Result result : results) {
+            System.out.println(result);
+            assertThat(result.toString(), result.duplicates, is(0L));
+            assertThat(result.toString(), result.orderViolations, is(0L));
+
+            boolean backward = result.scenario.equals("backward-2s") || result.scenario.equals("leap-step")
+                    || result.scenario.equals("midnight-back");
+            if (result.target == ClockChaosHarness.Target.DAY_CODE || !backward) {
+                assertThat(result.toString(), result.rejected, is(0L));
+                assertThat(result.toString(), result.stallMillis, is(0L));
+            } else if (result.mode == ClockChaosHarness.Mode.REJECT) {
+                assertTrue(result.toString(), result.rejected > 0);
+            } else {
+                assertThat(result.toString(), result.rejected, is(0L));
+                assertTrue(result.toString(), result.stallMillis > 0);
+            }
+        }
+    }
+
+    @Test
+    public void rollover() {
+        ClockChaosHarness.Scenario midnight = null;
+        for (ClockChaosHarness.Scenario scenario : ClockChaosHarness.scenarios())
+            if (scenario.name.equals("midnight")) midnight = scenario;
+
+        // 400000 calls at 100 reads a milli cross the midnight 2 seconds later
+        ClockChaosHarness.Result result = ClockChaosHarness.run(midnight, ClockChaosHarness.Target.SID,
+                ClockChaosHarness.Mode.REJECT);
+        assertThat(result.generated, is(400000L));
+        assertThat(result.orderViolations, is(0L));
+    }
+}
@@ -0,0 +1,121 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+import org.n3r.idworker.strategy.CodeExporter;
+import org.n3r.idworker.strategy.DayPrefixRandomCodeStrategy;
+import org.n3r.idworker.strategy.DefaultRandomCodeStrategy;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CodeExporterTest {
+
+    @Test
+    public void csvRollsAcrossPrefixes() throws IOException {
+        DefaultRandomCodeStrategy strategy = new DefaultRandomCodeStrategy().setMinRandomSize(4).setMaxRandomSize(4);
+        File file = File.createTempFile("codes", ".csv");
+        try {
+            long exported = new CodeExporter(strategy).setWorkerId(7).export(25000, file);
+            assertThat(exported, is(25000L));
+
+            Set<String> codes = new HashSet<String>();
+            Set<String> prefixes = new HashSet<String>();
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    assertTrue(line, line.matches("7-\\d{3}-\\d{4}"));
+                    codes.add(line);
+                    prefixes.add(line.substring(2, 5));
+                }
+            } finally {
+                reader.close();
+            }
+            assertThat(codes.size(), is(25000));
+            assertTrue(prefixes.size() >= 3); // 10000 codes a prefix at most
+        } finally {
+            strategy.release();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void binaryNotReissued() throws IOException {
+        DefaultRandomCodeStrategy strategy = new DefaultRandomCodeStrategy().setMinRandomSize(6).setMaxRandomSize(6);
+        File file = File.createTempFile("codes", ".bin");
+        try {
+            new CodeExporter(strategy).setWorkerId(7).setFormat(CodeExporter.Format.BINARY).export(1000, file);
+            assertThat(file.length(), is(12000L));
+
+            Set<Long> codes = new HashSet<Long>();
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                for (int i = 0; i < 1000; ++i) {
+                    assertThat(in.readInt(), is(7));
+                    codes.add(((long) in.readInt() << 32) | in.readInt());
+                }
+            } finally {
+                in.close();
+            }
+            assertThat(codes.size(), is(1000));
+
+            for (int i = 0; i < 2000; ++i) {
+                long code = ((long) strategy.prefix() << 32) | strategy.next();
+                assertTrue(codes.add(code));
+            }
+        } finally {
+            strategy.release();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void dayPrefixRollsOverWithTheDay() throws IOException {
+        final long[] clock = {ClockChaosHarness.localMillis(2020, Calendar.JANUARY, 31, 23, 59, 0)};
+        DayPrefixRandomCodeStrategy strategy = new DayPrefixRandomCodeStrategy("yyMM") {
+            @Override
+            protected long currentMillis() {
+                return clock[0];
+            }
+        };
+        File home = File.createTempFile("idworker-export", "");
+        home.delete();
+        strategy.setIdWorkerHome(home).setMinRandomSize(4).setMaxRandomSize(4);
+        File file = File.createTempFile("codes", ".csv");
+        try {
+            CodeExporter exporter = new CodeExporter(strategy).setWorkerId(7).setPrefixWidth(4);
+            assertThat(exporter.export(12000, file), is(10000L)); // the month prefix is full
+            try {
+                strategy.next();
+                fail();
+            } catch (RuntimeException e) {
+                assertThat(e.getMessage(), is("codes of prefix 2001 are used up"));
+            }
+
+            clock[0] += 60000; // next month
+            assertThat(exporter.export(2000, file), is(2000L));
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                for (String line; (line = reader.readLine()) != null; )
+                    assertTrue(line, line.startsWith("7-2002-"));
+            } finally {
+                reader.close();
+            }
+        } finally {
+            strategy.release();
+            file.delete();
+            ClockChaosHarness.deleteRecursively(home);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DayIdWorkerTest {
+    static class StaticTimeDayWorker extends DayIdWorker {
+        public long time;
+
+        public StaticTimeDayWorker(long workerId) {
+            super(workerId);
+        }
+
+        @Override
+        protected long millisGen() {
+            return time;
+        }
+    }
+
+    @Test
+    public void rollOverMidnight() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2015, Calendar.MARCH, 9, 23, 59, 59);
+        calendar.set(Calendar.MILLISECOND, 999);
+        long beforeMidnight = calendar.getTimeInMillis();
+
+        StaticTimeDayWorker worker = new StaticTimeDayWorker(1);
+        worker.time = beforeMidnight;
+        String sid1 = worker.next();
+        assertThat(sid1.length(), is(21));
+        assertThat(sid1.substring(0, 6), is("150309"));
+        assertThat(Long.parseLong(sid1.substring(6)) >> 21, is(86399999L));
+
+        worker.time = beforeMidnight + 1;
+        String sid2 = worker.next();
+        assertThat(sid2.substring(0, 6), is("150310"));
+        assertThat(Long.parseLong(sid2.substring(6)) >> 21, is(0L));
+        assertThat(worker.getDay(), is("150310"));
+    }
+
+    @Test
+    public void prefixMatchesToday() {
+        DayIdWorker worker = new DayIdWorker(1);
+        String sid = worker.nextShort();
+        assertThat(sid.length(), is(16));
+        assertThat(sid.substring(0, 6), is(new SimpleDateFormat("yyMMdd").format(new Date(worker.getLastMillis()))));
+    }
+}
@@ -3,22 +3,28 @@ package org.n3r.idworker;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.n3r.idworker.strategy.DefaultWorkerIdStrategy;
+import org.n3r.idworker.server.IdWorkerServer;
+import org.n3r.idworker.server.SegmentRegistry;
+import org.n3r.idworker.server.WorkerIdRegistry;
+import org.n3r.idworker.strategy.FileLock;
+import org.n3r.idworker.utils.Ip;
 import org.n3r.idworker.utils.Utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DefaultWorkerIdStrategyTest {
     @BeforeClass
     public static void beforeClass() {
-        File dir = Utils.createIdWorkerHome();
-        if (dir.exists()) {
-            for (File f : dir.listFiles()) {
-                f.delete();
-            }
-        }
-        dir.delete();
+        IdTest.delete(Utils.createIdWorkerHome());
     }
 
     @Test
@@ -32,4 +38,161 @@ public class DefaultWorkerIdStrategyTest {
         d1.initialize();
         assertTrue(d1.availableWorkerId() != instance.availableWorkerId());
     }
+
+    @Test
+    public void migrateLegacyLockFiles() throws IOException {
+        File home = Utils.createIdWorkerHome();
+        String ipDotUsername = Ip.ip + "." + System.getProperty("user.name");
+        new File(new File(home, ipDotUsername), "legacy.migrated").delete(); // the first start after the upgrade
+        File legacy = new File(home, ipDotUsername + ".lock.0777");
+        legacy.createNewFile();
+        for (int i = 0; i < 100; ++i)
+            new File(home, "unrelated." + i).createNewFile();
+
+        DefaultWorkerIdStrategy strategy = new DefaultWorkerIdStrategy();
+        strategy.initialize();
+        assertTrue(strategy.availableWorkerId() >= 0);
+        assertThat(legacy.exists(), is(strategy.availableWorkerId() == 777)); // locked again when chosen
+        assertTrue(new File(new File(home, ipDotUsername), "lock.0777").exists());
+        assertTrue(new File(new File(home, ipDotUsername), "legacy.migrated").exists());
+        strategy.release();
+        deleteLockFiles(home, ipDotUsername, "0777");
+
+        // migrated only once
+        File later = new File(home, ipDotUsername + ".lock.0778");
+        later.createNewFile();
+        DefaultWorkerIdStrategy again = new DefaultWorkerIdStrategy();
+        again.initialize();
+        assertThat(later.exists(), is(true));
+        again.release();
+        later.delete();
+    }
+
+    @Test
+    public void legacyLockHeld() throws IOException {
+        File home = Utils.createIdWorkerHome();
+        String ipDotUsername = Ip.ip + "." + System.getProperty("user.name");
+        File lockHome = new File(home, ipDotUsername);
+        lockHome.mkdirs();
+        new File(lockHome, "lock.0888").createNewFile();
+        Utils.writeLine(new File(lockHome, "last"), "0888");
+
+        // an older version holds the worker id at the legacy path
+        FileLock legacy = new FileLock(new File(home, ipDotUsername + ".lock.0888"));
+        assertTrue(legacy.tryLock());
+        try {
+            Properties props = new Properties();
+            props.setProperty("server.address", "http://10.255.255.1:18001"); // unreachable
+            props.setProperty("bootstrap", "fast");
+            props.setProperty("bootstrap.budget.millis", "200");
+            DefaultWorkerIdStrategy strategy = new DefaultWorkerIdStrategy(props);
+            strategy.initialize();
+            assertTrue(strategy.availableWorkerId() >= 0);
+            assertTrue(strategy.availableWorkerId() != 888);
+            strategy.release();
+        } finally {
+            legacy.destroy();
+            deleteLockFiles(home, ipDotUsername, "0888");
+        }
+    }
+
+    /**
+     * Delete the lock files made up by the test, so the later tests don't take their worker ids.
+     */
+    static void deleteLockFiles(File home, String ipDotUsername, String workerId) {
+        File lockHome = new File(home, ipDotUsername);
+        new File(lockHome, "lock." + workerId).delete();
+        new File(lockHome, "last").delete();
+        new File(home, ipDotUsername + ".lock." + workerId).delete();
+    }
+
+    @Test
+    public void fastBootstrap() {
+        Properties props = new Properties();
+        props.setProperty("server.address", "http://10.255.255.1:18001"); // unreachable
+        props.setProperty("bootstrap", "fast");
+        props.setProperty("bootstrap.budget.millis", "200");
+
+        long start = System.currentTimeMillis();
+        DefaultWorkerIdStrategy strategy = new DefaultWorkerIdStrategy(props);
+        strategy.initialize();
+        long wid = strategy.availableWorkerId();
+        assertTrue(wid >= 0);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        strategy.release();
+
+        DefaultWorkerIdStrategy again = new DefaultWorkerIdStrategy(props);
+        again.initialize();
+        assertThat(again.availableWorkerId(), is(wid));
+        again.release();
+    }
+
+    @Test
+    public void fastLeaseFenced() throws InterruptedException {
+        Properties props = new Properties();
+        props.setProperty("server.address", "http://10.255.255.1:18001"); // unreachable
+        props.setProperty("bootstrap", "fast");
+        props.setProperty("bootstrap.budget.millis", "200");
+        props.setProperty("bootstrap.lease.millis", "300");
+
+        DefaultWorkerIdStrategy strategy = new DefaultWorkerIdStrategy(props);
+        IdGenerator generator = new IdGenerator.Builder().workerIdStrategy(strategy).build();
+        assertTrue(generator.next() > 0);
+
+        // not fenced without the opt-in lease
+        Properties unleasedProps = new Properties();
+        unleasedProps.putAll(props);
+        unleasedProps.remove("bootstrap.lease.millis");
+        DefaultWorkerIdStrategy unleased = new DefaultWorkerIdStrategy(unleasedProps);
+        IdGenerator unleasedGenerator = new IdGenerator.Builder().workerIdStrategy(unleased).build();
+        assertTrue(unleasedGenerator.next() > 0);
+
+        Thread.sleep(400);
+        assertTrue(unleasedGenerator.next() > 0);
+        unleased.release();
+        assertThat(strategy.availableWorkerId(), is(-1L));
+        try {
+            generator.next();
+            fail("the ids should be fenced after the lease");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        strategy.release();
+    }
+
+    @Test
+    public void switchedOnSyncConflict() throws Exception {
+        File logFile = File.createTempFile("idworker-server", ".log");
+        WorkerIdRegistry registry = new WorkerIdRegistry(logFile, 1023);
+        registry.sync("10.0.0.1.other", Arrays.asList(555L));
+        IdWorkerServer server = new IdWorkerServer(0, registry, new SegmentRegistry(new File(logFile.getPath() + ".segments"))).start();
+        String ipDotUsername = Ip.ip + "." + System.getProperty("user.name");
+        File lockHome = new File(Utils.createIdWorkerHome(), ipDotUsername);
+        try {
+            lockHome.mkdirs();
+            new File(lockHome, "lock.0555").createNewFile();
+            Utils.writeLine(new File(lockHome, "last"), "0555");
+
+            Properties props = new Properties();
+            props.setProperty("server.address", "http://127.0.0.1:" + server.getPort());
+            props.setProperty("bootstrap", "fast");
+            DefaultWorkerIdStrategy strategy = new DefaultWorkerIdStrategy(props);
+            IdGenerator generator = new IdGenerator.Builder().workerIdStrategy(strategy).build();
+            generator.next();
+
+            for (int i = 0; i < 50 && strategy.availableWorkerId() == 555; ++i) Thread.sleep(100);
+            long wid = strategy.availableWorkerId();
+            assertTrue(wid >= 0 && wid != 555);
+            assertThat(registry.sync(ipDotUsername, new ArrayList<Long>()).contains(wid), is(true));
+
+            generator.next();
+            assertThat(generator.getWorkerId(), is(wid)); // the workers are recreated
+            strategy.release();
+        } finally {
+            server.stop();
+            deleteLockFiles(lockHome.getParentFile(), ipDotUsername, "0555");
+            logFile.delete();
+            new File(logFile.getPath() + ".segments").delete();
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package org.n3r.idworker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.strategy.FileLock;
+import org.n3r.idworker.strategy.MappedHighWaterMark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HighWaterMarkTest {
+    File file;
+    FileLock fileLock;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("lock.", ".0001");
+        fileLock = new FileLock(file);
+    }
+
+    @After
+    public void tearDown() {
+        fileLock.destroy();
+        file.delete();
+    }
+
+    @Test
+    public void persistedAheadOfUsedMillis() {
+        MappedHighWaterMark mark = new MappedHighWaterMark(fileLock, 100);
+        assertThat(mark.get(), is(0L));
+
+        IdWorker worker = new IdWorker(1);
+        worker.resumeFrom(mark);
+        for (int i = 0; i < 100000; ++i) worker.nextId();
+        assertTrue(mark.get() > worker.getLastMillis());
+        assertTrue(mark.get() <= worker.getLastMillis() + 100);
+
+        fileLock.destroy();
+        fileLock = new FileLock(file);
+        MappedHighWaterMark reopened = new MappedHighWaterMark(fileLock, 100);
+        assertThat(reopened.get(), is(mark.get()));
+    }
+
+    @Test
+    public void quickRestartWaitsForMark() {
+        MappedHighWaterMark mark = new MappedHighWaterMark(fileLock, 100);
+        IdWorker before = new IdWorker(1);
+        before.resumeFrom(mark);
+        long lastId = before.nextId();
+
+        IdWorker after = new IdWorker(1);
+        after.resumeFrom(mark);
+        assertTrue(System.currentTimeMillis() >= mark.get() - 1);
+        long id = after.nextId();
+        assertTrue(id > lastId);
+        assertTrue(after.getLastMillis() > before.getLastMillis());
+    }
+
+    @Test
+    public void rolledBackClockRejected() {
+        MappedHighWaterMark mark = new MappedHighWaterMark(fileLock, 100);
+        IdWorker before = new IdWorker(1);
+        before.resumeFrom(mark);
+        before.nextId();
+
+        IdWorker after = new IdWorker(1) {
+            @Override
+            protected long millisGen() {
+                return System.currentTimeMillis() - 60000; // clock rolled back one minute
+            }
+        };
+        after.resumeFrom(mark);
+        try {
+            after.nextId();
+            fail();
+        } catch (InvalidSystemClock e) {
+            // expected
+        }
+    }
+
+    static class MarkedWorkerIdStrategy extends IdGeneratorTest.FixedWorkerIdStrategy implements HighWaterMark {
+        final AtomicLong persisted;
+
+        MarkedWorkerIdStrategy(long workerId, long persisted) {
+            super(workerId);
+            this.persisted = new AtomicLong(persisted);
+        }
+
+        @Override
+        public long get() {
+            return persisted.get();
+        }
+
+        @Override
+        public synchronized long advance(long millis) {
+            persisted.set(Math.max(persisted.get(), millis + 100));
+            return persisted.get();
+        }
+    }
+
+    @Test
+    public void waitedOncePerGenerator() {
+        long previous = System.currentTimeMillis() + 200; // a quick restart
+        MarkedWorkerIdStrategy strategy = new MarkedWorkerIdStrategy(3, previous);
+        IdGenerator generator = IdGenerator.builder().workerIdStrategy(strategy).build();
+
+        assertTrue(generator.getDecoder().timestampOf(generator.next()) > previous);
+        assertTrue(IdDecoder.sidTimestampOf(generator.nextSid()) > previous);
+        assertTrue(new IdDecoder(IdWorkerInt31.DEFAULT_LAYOUT, 1L << 10)
+                .timestampOf(generator.nextInt31(), System.currentTimeMillis() + 60000) > previous);
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(strategy.get() > System.currentTimeMillis()); // advanced by this generator
+            long start = System.nanoTime();
+            IdNamespace namespace = generator.of("ns" + i);
+            long id = namespace.next();
+            assertTrue(System.nanoTime() - start < 50000000L);
+            assertTrue(namespace.getDecoder().timestampOf(id) > previous);
+        }
+    }
+
+    @Test
+    public void closedMarkStopsWriting() {
+        MappedHighWaterMark mark = new MappedHighWaterMark(fileLock, 100);
+        long persisted = mark.advance(System.currentTimeMillis());
+        mark.close();
+        assertTrue(mark.advance(persisted + 1000) > persisted + 1000);
+        assertThat(mark.get(), is(persisted));
+    }
+}
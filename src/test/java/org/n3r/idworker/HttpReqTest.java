@@ -0,0 +1,92 @@
+package org.n3r.idworker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.utils.HttpReq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class HttpReqTest {
+    static final String DEAD = "http://127.0.0.1:1";
+
+    HttpServer fast, slow;
+    AtomicInteger fastHits = new AtomicInteger();
+
+    @Before
+    public void before() throws IOException {
+        fast = server("fast", 0, fastHits);
+        slow = server("slow", 2000, new AtomicInteger());
+    }
+
+    @After
+    public void after() {
+        fast.stop(0);
+        slow.stop(0);
+    }
+
+    private static HttpServer server(final String body, final long delayMillis, final AtomicInteger hits) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                hits.incrementAndGet();
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Test
+    public void hedged() {
+        long start = System.currentTimeMillis();
+        String body = HttpReq.get(url(slow) + "," + url(fast)).req("/sync").hedge(100).exec();
+        assertThat(body, is("fast"));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void failover() {
+        assertThat(HttpReq.get(DEAD + "," + url(fast)).req("/inc").retry(1, 10).exec(), is("fast"));
+        assertThat(HttpReq.get(DEAD + "," + url(fast)).req("/inc").exec(), is(nullValue()));
+        assertThat(HttpReq.get(DEAD).req("/inc").retry(2, 10).exec(), is(nullValue()));
+    }
+
+    @Test
+    public void async() throws Exception {
+        Future<String> future = HttpReq.get(url(fast)).req("/inc").execAsync();
+        assertThat(future.get(5, TimeUnit.SECONDS), is("fast"));
+    }
+
+    @Test
+    public void timeout() {
+        assertThat(HttpReq.get(url(slow)).timeout(1000, 100).exec(), is(nullValue()));
+    }
+}
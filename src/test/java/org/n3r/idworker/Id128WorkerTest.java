@@ -0,0 +1,69 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+import org.n3r.idworker.utils.Crockford;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class Id128WorkerTest {
+    Id128Worker worker = new Id128Worker(0x1234);
+
+    @Test
+    public void uuidV7Layout() {
+        long before = System.currentTimeMillis();
+        UUID uuid = worker.nextUUID();
+        long after = System.currentTimeMillis();
+
+        assertThat(uuid.version(), is(7));
+        assertThat(uuid.variant(), is(2));
+        long millis = Id128Worker.timestampOf(uuid.getMostSignificantBits());
+        assertTrue(millis >= before && millis <= after);
+        assertThat((uuid.getLeastSignificantBits() >>> 46) & 0xFFFF, is(0x1234L));
+    }
+
+    @Test
+    public void ordered() {
+        long[] pairs = new long[20000];
+        worker.next128s(pairs);
+        for (int i = 2; i < pairs.length; i += 2) {
+            assertTrue(pairs[i] > pairs[i - 2]); // msb is strictly increasing in a worker
+        }
+
+        String last = "";
+        Set<String> ulids = new HashSet<String>();
+        char[] chars = new char[Crockford.ULID_LENGTH];
+        for (int i = 0; i < 10000; ++i) {
+            worker.nextUlid(chars, 0);
+            String ulid = new String(chars);
+            assertTrue(ulid.compareTo(last) > 0);
+            last = ulid;
+            ulids.add(ulid);
+        }
+        assertThat(ulids.size(), is(10000));
+    }
+
+    @Test
+    public void crockfordRoundTrip() {
+        long[][] values = {{0, 0}, {-1, -1}, {0x0123456789ABCDEFL, 0xFEDCBA9876543210L}, {1, Long.MIN_VALUE}};
+        long[] decoded = new long[2];
+        for (long[] value : values) {
+            String encoded = Crockford.encode(value[0], value[1]);
+            assertThat(encoded.length(), is(26));
+            Crockford.decode(encoded.toLowerCase(), 0, decoded, 0);
+            assertThat(decoded[0], is(value[0]));
+            assertThat(decoded[1], is(value[1]));
+        }
+        assertThat(Crockford.encode(-1, -1), is("7ZZZZZZZZZZZZZZZZZZZZZZZZZ"));
+
+        UUID uuid = worker.nextUUID();
+        String ulid = Crockford.encode(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        Crockford.decode(ulid, 0, decoded, 0);
+        assertThat(new UUID(decoded[0], decoded[1]), is(uuid));
+    }
+}
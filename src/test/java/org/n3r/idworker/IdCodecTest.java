@@ -0,0 +1,112 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+import org.n3r.idworker.utils.IdCodec;
+import org.n3r.idworker.utils.Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IdCodecTest {
+    static final long[] VALUES = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE,
+            -1, Long.MIN_VALUE, new IdWorker(1).nextId()};
+
+    @Test
+    public void bigEndian() {
+        byte[] bytes = new byte[IdCodec.LONG_BYTES];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IdCodec.LONG_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long value : VALUES) {
+            assertThat(IdCodec.writeLong(value, bytes, 0), is(8));
+            assertThat(IdCodec.readLong(bytes, 0), is(value));
+            assertThat(ByteBuffer.wrap(bytes).getLong(), is(value));
+
+            buffer.clear();
+            IdCodec.putLong(buffer, value);
+            buffer.flip();
+            assertThat(IdCodec.getLong(buffer), is(value));
+        }
+
+        IdWorker worker = new IdWorker(2);
+        byte[] last = new byte[8], next = new byte[8];
+        IdCodec.writeLong(worker.nextId(), last, 0);
+        for (int i = 0; i < 1000; ++i) {
+            IdCodec.writeLong(worker.nextId(), next, 0);
+            assertTrue(compareUnsigned(last, next) < 0);
+            System.arraycopy(next, 0, last, 0, 8);
+        }
+    }
+
+    @Test
+    public void varint() {
+        byte[] bytes = new byte[IdCodec.MAX_VARINT_BYTES * VALUES.length * 2];
+        int offset = 0;
+        for (long value : VALUES) {
+            int end = IdCodec.writeVarint(value, bytes, offset);
+            assertThat(end - offset, is(IdCodec.varintSize(value)));
+            assertThat(IdCodec.readVarint(bytes, offset), is(value));
+            offset = IdCodec.writeZigzag(value, bytes, end);
+            assertThat(IdCodec.readZigzag(bytes, end), is(value));
+        }
+        assertThat(IdCodec.varintSize(127), is(1));
+        assertThat(IdCodec.varintSize(128), is(2));
+        assertThat(IdCodec.varintSize(-1), is(10));
+        assertThat(IdCodec.varintSize(IdCodec.zigzag(-1)), is(1));
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (long value : VALUES) {
+            IdCodec.putVarint(buffer, value);
+            IdCodec.putZigzag(buffer, value);
+        }
+        buffer.flip();
+        for (long value : VALUES) {
+            assertThat(IdCodec.getVarint(buffer), is(value));
+            assertThat(IdCodec.getZigzag(buffer), is(value));
+        }
+        assertThat(buffer.hasRemaining(), is(false));
+    }
+
+    @Test
+    public void base28() {
+        byte[] bytes = new byte[IdCodec.BASE28_LENGTH];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IdCodec.BASE28_LENGTH);
+        String last = "";
+        for (long value : new long[]{0, 1, 27, 28, 281474976710655L, new IdWorker(3).nextId(), Long.MAX_VALUE}) {
+            IdCodec.writeBase28(value, bytes, 0);
+            String encoded = new String(bytes);
+            assertThat(encoded, is(Utils.padLeft(Utils.encode(value), IdCodec.BASE28_LENGTH, '0')));
+            assertTrue(encoded.compareTo(last) > 0);
+            last = encoded;
+            assertThat(IdCodec.readBase28(bytes, 0, bytes.length), is(value));
+
+            buffer.clear();
+            IdCodec.putBase28(buffer, value);
+            buffer.flip();
+            assertThat(IdCodec.getBase28(buffer, IdCodec.BASE28_LENGTH), is(value));
+        }
+
+        byte[] unpadded = Utils.encode(281474976710655L).getBytes();
+        assertThat(IdCodec.readBase28(unpadded, 0, unpadded.length), is(281474976710655L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void base28Negative() {
+        IdCodec.writeBase28(-1, new byte[IdCodec.BASE28_LENGTH], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void base28BadByte() {
+        IdCodec.readBase28("12E".getBytes(), 0, 3);
+    }
+
+    static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; ++i) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) return diff;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,92 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IdDecoderTest {
+    @Test
+    public void decodeLongIds() {
+        IdWorker worker = new IdWorker(123);
+        IdDecoder decoder = worker.decoder();
+
+        long[] ids = new long[1000];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = worker.nextId();
+            assertThat(decoder.timestampOf(ids[i]), is(worker.getLastMillis()));
+            assertThat(decoder.workerIdOf(ids[i]), is(123L));
+            assertTrue(decoder.minIdAt(worker.getLastMillis()) <= ids[i]);
+            assertTrue(decoder.maxIdAt(worker.getLastMillis()) >= ids[i]);
+        }
+
+        long[] timestamps = new long[ids.length];
+        int[] workerIds = new int[ids.length];
+        int[] sequences = new int[ids.length];
+        decoder.decode(ids, timestamps, workerIds, sequences);
+        for (int i = 0; i < ids.length; ++i) {
+            assertThat(timestamps[i], is(decoder.timestampOf(ids[i])));
+            assertThat(workerIds[i], is(123));
+            assertThat((long) sequences[i], is(ids[i] & IdLayout.DEFAULT.getSequenceMask()));
+        }
+    }
+
+    @Test
+    public void idRangeOfMillis() {
+        IdDecoder decoder = new IdDecoder(IdLayout.DEFAULT);
+        long millis = IdLayout.DEFAULT_EPOCH + 1000;
+        assertThat(decoder.minIdAt(millis), is(1000L << 21));
+        assertThat(decoder.maxIdAt(millis), is((1001L << 21) - 1));
+        assertThat(decoder.minIdAt(0), is(0L));
+        assertThat(decoder.maxIdAt(0), is(-1L));
+    }
+
+    @Test
+    public void decodeIntIds() {
+        IdWorkerInt31 worker = new IdWorkerInt31(7);
+        IdDecoder decoder = worker.decoder();
+        int id = worker.nextIdInt();
+        long now = System.currentTimeMillis();
+
+        assertThat(decoder.workerIdOf(id), is(7L));
+        assertThat(decoder.timestampOf(id, now), is(worker.getLastMillis()));
+
+        IdWorkerInt legacy = new IdWorkerInt(7);
+        int legacyId = legacy.nextIdInt();
+        assertThat(legacy.decoder().workerIdOf(legacyId), is(7L));
+        assertThat(legacy.decoder().timestampOf(legacyId, now), is(legacy.getLastMillis()));
+    }
+
+    @Test
+    public void decodeSid() {
+        DayIdWorker worker = new DayIdWorker(9);
+        String sid = worker.next();
+        assertThat(IdDecoder.sidTimestampOf(sid), is(worker.getLastMillis()));
+        assertThat(IdDecoder.sidWorkerIdOf(sid), is(9L));
+
+        String shortSid = worker.nextShort();
+        assertThat(IdDecoder.sidTimestampOf(shortSid), is(worker.getLastMillis()));
+        assertThat(IdDecoder.sidWorkerIdOf(shortSid), is(9L));
+    }
+
+    @Test
+    public void decodeLegacySid() {
+        long id = IdDecoder.SID.minIdAt(1000) | 9L << 11 | 5; // 1s after midnight
+        String legacy = "200131" + String.format("%014d", id);
+
+        assertThat(legacy.length(), is(20));
+        assertThat(IdDecoder.sidIdOf(legacy), is(id));
+        assertThat(IdDecoder.sidTimestampOf(legacy), is(IdDecoder.midnightOf("200131") + 1000));
+        assertThat(IdDecoder.sidWorkerIdOf(legacy), is(9L));
+        assertThat(IdDecoder.sidSequenceOf(legacy), is(5L));
+    }
+
+    @Test
+    public void midnightCached() {
+        long midnight = IdDecoder.midnightOf("200131");
+        assertThat(IdDecoder.midnightOf("200201") - midnight, is(86400000L));
+        assertThat(IdDecoder.midnightOf("200131"), is(midnight));
+        assertThat(IdDecoder.midnightOf("991231") > midnight, is(true));
+    }
+}
@@ -0,0 +1,134 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdGeneratorTest {
+    static class FixedWorkerIdStrategy implements WorkerIdStrategy {
+        final long workerId;
+        int initialized, released;
+
+        FixedWorkerIdStrategy(long workerId) {
+            this.workerId = workerId;
+        }
+
+        @Override
+        public void initialize() {
+            ++initialized;
+        }
+
+        @Override
+        public long availableWorkerId() {
+            return workerId;
+        }
+
+        @Override
+        public void release() {
+            ++released;
+        }
+    }
+
+    static class SequenceCodeStrategy implements RandomCodeStrategy {
+        int initialized, released, next;
+
+        @Override
+        public void init() {
+            ++initialized;
+        }
+
+        @Override
+        public int prefix() {
+            return 7;
+        }
+
+        @Override
+        public int next() {
+            return ++next;
+        }
+
+        @Override
+        public void release() {
+            ++released;
+        }
+    }
+
+    @Test
+    public void lazyAndIndependent() {
+        FixedWorkerIdStrategy strategy1 = new FixedWorkerIdStrategy(1);
+        FixedWorkerIdStrategy strategy2 = new FixedWorkerIdStrategy(2);
+        IdGenerator generator1 = IdGenerator.builder().workerIdStrategy(strategy1).build();
+        IdGenerator generator2 = IdGenerator.builder().workerIdStrategy(strategy2).layout(IdLayout.WIDE_WORKER).build();
+        assertThat(strategy1.initialized, is(0));
+
+        long id1 = generator1.next();
+        long id2 = generator2.next();
+        assertThat(strategy1.initialized, is(1));
+        assertThat(generator1.getDecoder().workerIdOf(id1), is(1L));
+        assertThat(generator2.getDecoder().workerIdOf(id2), is(2L));
+        assertThat(generator2.getLayout(), is(IdLayout.WIDE_WORKER));
+        assertThat(generator1.nextSid().length(), is(21));
+
+        FixedWorkerIdStrategy strategy3 = new FixedWorkerIdStrategy(3);
+        generator1.configure(strategy3);
+        assertThat(strategy1.released, is(1));
+        assertThat(generator1.getWorkerId(), is(3L));
+        assertThat(generator1.of("orders").getDecoder().workerIdOf(generator1.of("orders").next()), is(3L));
+    }
+
+    @Test
+    public void narrowLayoutsFitted() {
+        Properties props = new Properties();
+        props.setProperty("ns.orders.layout", "high_sequence");
+        IdGenerator generator = IdGenerator.builder().workerIdStrategy(new FixedWorkerIdStrategy(2000))
+                .properties(props).layout(IdLayout.WIDE_WORKER).build();
+        assertThat(generator.getDecoder().workerIdOf(generator.next()), is(2000L));
+
+        try {
+            generator.of("orders").next();
+            fail();
+        } catch (IllegalStateException e) {
+            // 8 worker id bits
+        }
+
+        try {
+            generator.nextSid();
+            fail();
+        } catch (IllegalStateException e) {
+            // 10 worker id bits
+        }
+
+        // the legacy int ids mask the worker id, and the int31 ids fit it by a narrower window
+        assertTrue(generator.nextInt() >= 0);
+        IdLayout int31 = IdWorkerInt31.layoutFor(IdWorkerInt31.DEFAULT_LAYOUT, 2000);
+        assertThat(new IdDecoder(int31, int31.getMaxTimestamp() + 1).workerIdOf(generator.nextInt31()), is(2000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfLayoutRejected() {
+        IdGenerator.builder().workerIdStrategy(new FixedWorkerIdStrategy(1024)).build().next();
+    }
+
+    @Test
+    public void codes() {
+        SequenceCodeStrategy strategy = new SequenceCodeStrategy();
+        CodeGenerator generator = CodeGenerator.builder().randomCodeStrategy(strategy)
+                .idGenerator(IdGenerator.builder().workerIdStrategy(new FixedWorkerIdStrategy(5)).build())
+                .build();
+        assertThat(strategy.initialized, is(0));
+
+        assertThat(generator.next(), is("5-007-000001"));
+        assertThat(generator.next(), is("5-007-000002"));
+        assertThat(strategy.initialized, is(1));
+
+        generator.release();
+        assertThat(strategy.released, is(1));
+        assertTrue(generator.next().endsWith("000003"));
+        assertThat(strategy.initialized, is(2));
+    }
+}
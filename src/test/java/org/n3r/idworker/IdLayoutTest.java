@@ -0,0 +1,76 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdLayoutTest {
+    @Test
+    public void presets() {
+        assertThat(IdLayout.DEFAULT.maxIdsPerSecond(), is(2048000L));
+        assertThat(IdLayout.DEFAULT.getMaxWorkerId(), is(1023L));
+        assertThat(IdLayout.WIDE_WORKER.getMaxWorkerId(), is(4095L));
+        assertThat(IdLayout.WIDE_WORKER_10MS.maxIdsPerSecond(), is(204800L));
+        assertThat(IdLayout.WIDE_WORKER_10MS.lifetimeMillis(), is((1L << 39) * 10));
+        assertThat(IdLayout.HIGH_SEQUENCE.maxIdsPerSecond(), is(16384000L));
+        assertThat(IdLayout.preset("wide_worker"), is(IdLayout.WIDE_WORKER));
+    }
+
+    @Test
+    public void invalidLayouts() {
+        try {
+            new IdLayout(42, 11, 11, 1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // more than 63 bits
+        }
+
+        try {
+            new IdLayout(41, 10, 12, 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // zero time unit
+        }
+    }
+
+    @Test
+    public void fromProperties() {
+        Properties props = new Properties();
+        props.setProperty("layout", "high_sequence");
+        props.setProperty("layout.worker.bits", "7");
+
+        IdLayout layout = IdLayout.fromProperties(props, "layout", IdLayout.DEFAULT);
+        assertThat(layout.getTimestampBits(), is(41));
+        assertThat(layout.getWorkerIdBits(), is(7));
+        assertThat(layout.getSequenceBits(), is(14));
+
+        assertThat(IdLayout.fromProperties(new Properties(), "layout", IdLayout.DEFAULT), is(IdLayout.DEFAULT));
+    }
+
+    @Test
+    public void tenMillisLayout() {
+        IdLayout layout = IdLayout.WIDE_WORKER_10MS;
+        IdWorker worker = new IdWorker(8000, layout);
+        assertThat(worker.getWorkerId(), is(8000L));
+
+        Set<Long> set = new HashSet<Long>();
+        long lastId = 0;
+        for (int i = 0; i < 100000; ++i) {
+            long id = worker.nextId();
+            assertTrue(id > lastId);
+            assertThat((id >> layout.getWorkerIdShift()) & layout.getMaxWorkerId(), is(8000L));
+            assertThat(id >> layout.getTimestampLeftShift(), is((worker.getLastMillis() - layout.getEpoch()) / 10));
+            set.add(id);
+            lastId = id;
+        }
+
+        assertThat(set.size(), is(100000));
+    }
+}
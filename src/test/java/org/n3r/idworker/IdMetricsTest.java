@@ -0,0 +1,89 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+import org.n3r.idworker.metrics.IdMetrics;
+import org.n3r.idworker.metrics.MetricsSnapshot;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdMetricsTest {
+    @Test
+    public void idsAndSequenceWaits() {
+        MetricsSnapshot before = IdMetrics.snapshot();
+
+        IdWorker idWorker = new IdWorker(1, new IdLayout(41, 10, 2, 1, IdLayout.DEFAULT_EPOCH));
+        IdMetrics.register("metrics.test", idWorker);
+        for (int i = 0; i < 100; ++i) idWorker.nextId();
+
+        MetricsSnapshot after = IdMetrics.snapshot();
+        assertThat(after.getIds("metrics.test") - before.getIds("metrics.test"), is(100L));
+        assertTrue(after.getSequenceWaits() - before.getSequenceWaits() >= 100 / 4 - 1);
+        assertTrue(after.idsPerSecondSince(before).get("metrics.test") > 0);
+
+        IdMetrics.unregister("metrics.test", idWorker);
+        idWorker.nextId();
+        assertThat(IdMetrics.snapshot().getIds("metrics.test") - before.getIds("metrics.test"), is(100L));
+    }
+
+    @Test
+    public void idsByGeneratorAndNamespace() {
+        MetricsSnapshot before = IdMetrics.snapshot();
+
+        IdGenerator generator = IdGenerator.builder().workerIdStrategy(new IdGeneratorTest.FixedWorkerIdStrategy(7)).build();
+        for (int i = 0; i < 10; ++i) generator.next();
+        for (int i = 0; i < 5; ++i) generator.of("metrics").next();
+        generator.release();
+
+        MetricsSnapshot after = IdMetrics.snapshot();
+        assertThat(after.getIds("IdWorker") - before.getIds("IdWorker"), is(10L));
+        assertThat(after.getIds("ns.metrics") - before.getIds("ns.metrics"), is(5L));
+    }
+
+    @Test
+    public void clockBackwards() {
+        final long[] now = {System.currentTimeMillis()};
+        IdWorker idWorker = new IdWorker(1) {
+            @Override
+            protected long millisGen() {
+                return now[0];
+            }
+        };
+        idWorker.nextId();
+        now[0] -= 10;
+
+        long before = IdMetrics.snapshot().getClockBackwards();
+        try {
+            idWorker.nextId();
+            fail();
+        } catch (InvalidSystemClock e) {
+            assertThat(IdMetrics.snapshot().getClockBackwards(), is(before + 1));
+        }
+    }
+
+    @Test
+    public void writeLatency() {
+        for (int i = 0; i < 100; ++i) IdMetrics.recordWrite(i * 10000L);
+
+        MetricsSnapshot snapshot = IdMetrics.snapshot();
+        assertTrue(snapshot.getWrites() >= 100);
+        assertTrue(snapshot.getWriteMaxMicros() >= 990);
+        assertTrue(snapshot.getWriteLatencyMicros(0.5) <= snapshot.getWriteLatencyMicros(0.99));
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        IdMetrics.registerMBean();
+        IdMetrics.registerMBean();
+
+        ObjectName name = new ObjectName(IdMetrics.OBJECT_NAME);
+        Object clockBackwards = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ClockBackwards");
+        assertThat(clockBackwards, is((Object) IdMetrics.snapshot().getClockBackwards()));
+        ManagementFactory.getPlatformMBeanServer().getAttribute(name, "IdsPerSecond");
+    }
+}
@@ -0,0 +1,45 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IdNamespaceTest {
+    @Test
+    public void cachedHandle() {
+        assertThat(Id.of("orders"), is(sameInstance(Id.of("orders"))));
+        assertThat(Id.of("orders").getName(), is("orders"));
+    }
+
+    @Test
+    public void layoutByProperties() {
+        assertThat(Id.of("orders").getLayout(), is(IdLayout.HIGH_SEQUENCE));
+        assertThat(Id.of("users").getLayout(), is(Id.getLayout()));
+    }
+
+    @Test
+    public void independentSequences() {
+        IdNamespace orders = Id.of("orders");
+        IdNamespace users = Id.of("users");
+
+        Set<Long> orderIds = new HashSet<Long>();
+        long last = 0;
+        for (int i = 0; i < 100000; ++i) {
+            long id = orders.next();
+            assertTrue(id > last);
+            last = id;
+            orderIds.add(id);
+            users.next();
+        }
+        assertThat(orderIds.size(), is(100000));
+
+        IdDecoder decoder = orders.getDecoder();
+        assertThat(decoder.workerIdOf(last), is(Id.getWorkerId()));
+    }
+}
@@ -0,0 +1,125 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IdStreamTest {
+    IdGenerator generator = IdGenerator.builder()
+            .workerIdStrategy(new IdGeneratorTest.FixedWorkerIdStrategy(9)).build();
+
+    @Test
+    public void stream() {
+        IdStream stream = generator.stream(100);
+        long last = 0;
+        for (int i = 0; i < 1000; ++i) {
+            long id = stream.nextLong();
+            assertTrue(id > last);
+            last = id;
+        }
+
+        long[] ids = new long[250];
+        stream.next(ids);
+        for (long id : ids) {
+            assertTrue(id > last);
+            last = id;
+        }
+    }
+
+    @Test
+    public void parallelSplits() throws InterruptedException {
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        IdStream stream = generator.stream(64);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; ++i) {
+            final IdStream split = stream.trySplit();
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; ++j) ids.add(split.nextLong());
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertThat(ids.size(), is(80000));
+    }
+
+    @Test
+    public void publisherHonorsDemand() {
+        final List<long[]> chunks = new ArrayList<long[]>();
+        final IdPublisher.Subscription[] subscription = new IdPublisher.Subscription[1];
+        generator.publisher(10).subscribe(new Collector(chunks) {
+            @Override
+            public void onSubscribe(IdPublisher.Subscription s) {
+                subscription[0] = s;
+            }
+        });
+
+        assertThat(chunks.size(), is(0));
+        subscription[0].request(3);
+        assertThat(chunks.size(), is(3));
+        assertThat(chunks.get(0).length, is(10));
+
+        subscription[0].cancel();
+        subscription[0].request(3);
+        assertThat(chunks.size(), is(3));
+    }
+
+    @Test
+    public void publisherRecursiveRequests() {
+        final List<long[]> chunks = new ArrayList<long[]>();
+        generator.publisher(1).subscribe(new Collector(chunks) {
+            IdPublisher.Subscription subscription;
+
+            @Override
+            public void onSubscribe(IdPublisher.Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(long[] chunk) {
+                super.onNext(chunk);
+                if (chunks.size() < 100000) subscription.request(1);
+            }
+        });
+
+        assertThat(chunks.size(), is(100000));
+        Set<Long> ids = new HashSet<Long>();
+        for (long[] chunk : chunks) ids.add(chunk[0]);
+        assertThat(ids.size(), is(100000));
+    }
+
+    static class Collector implements IdPublisher.Subscriber {
+        final List<long[]> chunks;
+
+        Collector(List<long[]> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void onSubscribe(IdPublisher.Subscription subscription) {
+        }
+
+        @Override
+        public void onNext(long[] chunk) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
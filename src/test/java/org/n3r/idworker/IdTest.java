@@ -10,16 +10,18 @@ import org.n3r.idworker.utils.Utils;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Date;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class IdTest {
     @BeforeClass
     public static void beforeClass() {
         File dir = Utils.createIdWorkerHome();
         for (File f : dir.listFiles()) {
-            f.delete();
+            delete(f);
         }
 
         String ipdotlock = Ip.ip + "." + System.getProperty("user.name") + ".lock.0112";
@@ -32,6 +34,12 @@ public class IdTest {
         Id.configure(new DefaultWorkerIdStrategy());
     }
 
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) for (File f : files) delete(f);
+        file.delete();
+    }
+
     @AfterClass
     public static void afterClass() {
         String pathname = System.getProperty("user.home") + File.separator + ".idworkers";
@@ -49,4 +57,15 @@ public class IdTest {
         System.out.println(id);
         assertThat(((workerMask & id) >> 11), is(112L));
     }
+
+    @Test
+    public void bounds() {
+        Date from = new Date();
+        long id = Id.next();
+        Date to = new Date();
+
+        assertTrue(Id.lowerBound(from) <= id);
+        assertTrue(Id.upperBound(to) >= id);
+        assertTrue(Id.upperBound(from.getTime() - 1) < Id.lowerBound(from));
+    }
 }
@@ -0,0 +1,136 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdWorkerInt31Test {
+    static class StaticTimeWorker extends IdWorkerInt31 {
+        public long time = IdLayout.DEFAULT_EPOCH;
+
+        public StaticTimeWorker(long workerId, IdLayout layout, long windowSeconds, long borrowSeconds) {
+            super(workerId, layout, windowSeconds, borrowSeconds);
+        }
+
+        @Override
+        protected long millisGen() {
+            return time;
+        }
+    }
+
+    @Test
+    public void onlyUniquePositiveIds() {
+        IdWorkerInt31 worker = new IdWorkerInt31(31);
+        Set<Integer> set = new HashSet<Integer>();
+        int[] ids = new int[1000];
+        for (int i = 0; i < 50; ++i) {
+            worker.nextInts(ids);
+            for (int id : ids) {
+                assertTrue(id >= 0);
+                set.add(id);
+            }
+        }
+
+        assertThat(set.size(), is(50000));
+        assertThat(worker.getWraps(), is(0L));
+    }
+
+    @Test
+    public void wideWorkerIdFitted() {
+        assertThat(IdWorkerInt31.layoutFor(IdWorkerInt31.DEFAULT_LAYOUT, 31), is(IdWorkerInt31.DEFAULT_LAYOUT));
+
+        IdLayout layout = IdWorkerInt31.layoutFor(IdWorkerInt31.DEFAULT_LAYOUT, 1023);
+        assertThat(layout.getWorkerIdBits(), is(10));
+        assertThat(layout.getSequenceBits(), is(IdWorkerInt31.MIN_SEQUENCE_BITS));
+        assertThat(layout.getTimestampBits(), is(6));
+
+        IdWorkerInt31 worker = new IdWorkerInt31(1023, layout, 0, IdWorkerInt31.DEFAULT_BORROW_SECONDS);
+        assertThat(worker.decoder().workerIdOf(worker.nextIdInt()), is(1023L));
+    }
+
+    @Test
+    public void borrowFollowingSeconds() {
+        IdLayout layout = new IdLayout(16, 5, 10, 1000, IdLayout.DEFAULT_EPOCH);
+        StaticTimeWorker worker = new StaticTimeWorker(1, layout, 0, 10);
+
+        Set<Integer> set = new HashSet<Integer>();
+        for (int i = 0; i < 1024 * 11; ++i)
+            set.add(worker.nextIdInt());
+
+        assertThat(set.size(), is(1024 * 11));
+        assertThat(worker.getLastMillis(), is(IdLayout.DEFAULT_EPOCH + 10000L));
+    }
+
+    @Test
+    public void wrapDetected() {
+        IdLayout layout = new IdLayout(16, 5, 10, 1000, IdLayout.DEFAULT_EPOCH);
+        StaticTimeWorker worker = new StaticTimeWorker(1, layout, 3600, 0);
+        assertThat(worker.getWindowSeconds(), is(3600L));
+
+        int id1 = worker.nextIdInt();
+        worker.time += 3600 * 1000L;
+        int id2 = worker.nextIdInt();
+
+        assertThat(id1, is(id2));
+        assertThat(worker.getWraps(), is(1L));
+    }
+
+    @Test
+    public void backwardClockRefusedPastBorrow() {
+        IdLayout layout = new IdLayout(16, 5, 10, 1000, IdLayout.DEFAULT_EPOCH);
+        StaticTimeWorker worker = new StaticTimeWorker(1, layout, 0, 10);
+        worker.time += 3600 * 1000L;
+
+        Set<Integer> set = new HashSet<Integer>();
+        for (int i = 0; i < 1024; ++i) set.add(worker.nextIdInt());
+
+        worker.time -= 60 * 1000L; // far behind the borrow seconds
+        try {
+            worker.nextIdInt();
+            fail();
+        } catch (InvalidSystemClock e) {
+            // refused without waiting
+        }
+
+        worker.time += 60 * 1000L;
+        for (int i = 0; i < 1024; ++i) assertTrue(set.add(worker.nextIdInt()));
+    }
+
+    @Test
+    public void resumedAfterMarkSecond() {
+        IdLayout layout = new IdLayout(16, 5, 10, 1000, IdLayout.DEFAULT_EPOCH);
+        StaticTimeWorker worker = new StaticTimeWorker(1, layout, 0, 10);
+        worker.time += 3600 * 1000L;
+        final long persisted = worker.time + 500;
+        worker.resumeFrom(new HighWaterMark() {
+            @Override
+            public long get() {
+                return persisted;
+            }
+
+            @Override
+            public long advance(long millis) {
+                return millis + 100;
+            }
+        }, persisted);
+
+        worker.nextIdInt();
+        assertThat(worker.getLastMillis(), is(worker.time + 1000));
+    }
+
+    @Test
+    public void invalidLayout() {
+        try {
+            new IdWorkerInt31(1, IdLayout.DEFAULT, 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 63 bits layout
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.n3r.idworker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.server.IdWorkerServer;
+import org.n3r.idworker.utils.HttpReq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IdWorkerServerTest {
+    static final int CLIENTS = 1000;
+
+    File logFile;
+    IdWorkerServer server;
+
+    @Before
+    public void before() throws IOException {
+        logFile = File.createTempFile("idworker-server", ".log");
+        server = new IdWorkerServer(0, logFile).start();
+    }
+
+    @After
+    public void after() {
+        server.stop();
+        logFile.delete();
+        new File(logFile.getPath() + ".segments").delete();
+    }
+
+    // simulate a fleet-wide restart storm: every client syncs and increases at the same time
+    @Test
+    public void restartStorm() throws Exception {
+        Map<String, String> assigned = storm(new ConcurrentHashMap<String, String>());
+        assertThat(new HashSet<String>(assigned.values()).size(), is(CLIENTS));
+
+        // restart the server, and then all the clients come back with their local worker ids
+        server.stop();
+        server = new IdWorkerServer(0, logFile).start();
+        Map<String, String> synced = storm(assigned);
+        assertThat(synced, is(assigned));
+    }
+
+    private Map<String, String> storm(final Map<String, String> localIds) throws Exception {
+        final String url = "http://127.0.0.1:" + server.getPort();
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        List<Future<String[]>> futures = new ArrayList<Future<String[]>>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < CLIENTS; ++i) {
+            final String ipu = "10.0." + (i / 256) + "." + (i % 256) + ".app";
+            futures.add(executor.submit(new Callable<String[]>() {
+                @Override
+                public String[] call() {
+                    String localId = localIds.get(ipu);
+                    String synced = HttpReq.get(url).req("/sync").param("ipu", ipu)
+                            .param("ids", localId == null ? "" : localId).exec();
+                    if (synced != null && !synced.isEmpty()) return new String[]{ipu, synced};
+
+                    String inc = HttpReq.get(url).req("/inc").param("ipu", ipu).exec();
+                    return new String[]{ipu, String.format("%04d", Long.parseLong(inc))};
+                }
+            }));
+        }
+
+        Map<String, String> result = new HashMap<String, String>();
+        for (Future<String[]> future : futures) {
+            String[] ipuAndId = future.get();
+            result.put(ipuAndId[0], ipuAndId[1]);
+        }
+        executor.shutdown();
+        System.out.println(String.format("%d clients bootstrapped in %d ms", CLIENTS, System.currentTimeMillis() - start));
+
+        return result;
+    }
+
+    @Test
+    public void conflictedClaimIgnored() {
+        String url = "http://127.0.0.1:" + server.getPort();
+        assertThat(HttpReq.get(url).req("/sync").param("ipu", "a").param("ids", "0001,0002").exec(), is("0001,0002"));
+        assertThat(HttpReq.get(url).req("/sync").param("ipu", "b").param("ids", "0002,0003").exec(), is("0003"));
+        assertThat(HttpReq.get(url).req("/inc").param("ipu", "b").exec(), is("0"));
+        assertThat(HttpReq.get(url).req("/inc").param("ipu", "b").exec(), is("4"));
+    }
+}
@@ -0,0 +1,99 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+import org.n3r.idworker.strategy.DefaultRandomCodeStrategy;
+import org.n3r.idworker.strategy.FileLock;
+import org.n3r.idworker.strategy.IssuedCodes;
+import org.n3r.idworker.utils.Serializes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IssuedCodesTest {
+
+    @Test
+    public void mappedFilter() throws IOException {
+        File home = createTempDir();
+        File prefixFile = new File(home, "5.code.prefix.3");
+        BitSet bits = new BitSet(DefaultRandomCodeStrategy.MAX_BITS);
+        bits.set(0);
+        bits.set(123);
+        bits.set(999999);
+        Serializes.writeObject(prefixFile, bits);
+
+        IssuedCodes issuedCodes = new IssuedCodes(home, 2);
+        assertThat(issuedCodes.isIssued("5-003-000123"), is(true));
+        assertThat(issuedCodes.isIssued("5-003-000000"), is(true));
+        assertThat(issuedCodes.isIssued("5-003-999999"), is(true));
+        assertThat(issuedCodes.isIssued("5-003-000124"), is(false));
+        assertThat(issuedCodes.isIssued("5-004-000123"), is(false)); // no prefix file
+        assertThat(issuedCodes.isIssued("6-003-000123"), is(false));
+        assertThat(issuedCodes.isIssued("5-003"), is(false));
+        assertThat(issuedCodes.isIssued("5-003-12x"), is(false));
+        assertThat(issuedCodes.isIssued("5-003-1-2"), is(false));
+
+        assertThat(issuedCodes.areIssued(new String[]{"5-003-000123", "5-003-000124", "bad"}),
+                is(new boolean[]{true, false, false}));
+
+        // rewritten in place by the issuing process
+        FileLock fileLock = new FileLock(prefixFile);
+        bits.set(124);
+        fileLock.writeObject(bits);
+        fileLock.destroy();
+        assertThat(issuedCodes.isIssued("5-003-000124"), is(true));
+
+        delete(home);
+    }
+
+    @Test
+    public void growingFilterRemapped() throws IOException {
+        File home = createTempDir();
+        File prefixFile = new File(home, "5.code.prefix.1");
+        BitSet bits = new BitSet();
+        bits.set(1);
+        Serializes.writeObject(prefixFile, bits);
+
+        IssuedCodes issuedCodes = new IssuedCodes(home, 2);
+        assertThat(issuedCodes.isIssued(5, 1, 1), is(true));
+        assertThat(issuedCodes.isIssued(5, 1, 100000), is(false));
+
+        bits.set(100000);
+        prefixFile.setLastModified(prefixFile.lastModified() - 2000);
+        Serializes.writeObject(prefixFile, bits);
+        assertThat(issuedCodes.isIssued(5, 1, 100000), is(true));
+
+        delete(home);
+    }
+
+    @Test
+    public void issuedByStrategy() {
+        DefaultRandomCodeStrategy strategy = new DefaultRandomCodeStrategy();
+        strategy.init();
+        try {
+            IssuedCodes issuedCodes = new IssuedCodes();
+            for (int i = 0; i < 100; ++i) {
+                int code = strategy.next();
+                assertThat(issuedCodes.isIssued(Id.getWorkerId(), strategy.prefix(), code), is(true));
+            }
+        } finally {
+            strategy.release();
+        }
+    }
+
+    static File createTempDir() throws IOException {
+        File dir = File.createTempFile("idworkers", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+}
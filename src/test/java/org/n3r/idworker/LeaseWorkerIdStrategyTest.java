@@ -0,0 +1,120 @@
+package org.n3r.idworker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.strategy.FileWorkerIdCoordinator;
+import org.n3r.idworker.strategy.LeaseWorkerIdStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LeaseWorkerIdStrategyTest {
+    File leasesFile;
+    FileWorkerIdCoordinator coordinator;
+
+    @Before
+    public void before() throws IOException {
+        leasesFile = File.createTempFile("idworker-leases", ".properties");
+        coordinator = new FileWorkerIdCoordinator(leasesFile, 3);
+    }
+
+    @After
+    public void after() {
+        leasesFile.delete();
+    }
+
+    @Test
+    public void uniqueAndReused() {
+        LeaseWorkerIdStrategy s1 = new LeaseWorkerIdStrategy(coordinator, 60000);
+        LeaseWorkerIdStrategy s2 = new LeaseWorkerIdStrategy(coordinator, 60000);
+        s1.initialize();
+        s2.initialize();
+        assertThat(s1.availableWorkerId(), is(0L));
+        assertThat(s2.availableWorkerId(), is(1L));
+
+        s1.release();
+        LeaseWorkerIdStrategy s3 = new LeaseWorkerIdStrategy(coordinator, 60000);
+        s3.initialize();
+        assertThat(s3.availableWorkerId(), is(0L));
+
+        s2.release();
+        s3.release();
+    }
+
+    @Test
+    public void expiredLeaseReused() throws InterruptedException {
+        assertThat(coordinator.acquire("crashed", 50), is(0L));
+        assertThat(coordinator.acquire("other", 60000), is(1L));
+        Thread.sleep(100);
+
+        assertThat(coordinator.acquire("new", 60000), is(0L));
+        assertThat(coordinator.renew("crashed", 0, 60000), is(false));
+    }
+
+    @Test
+    public void renewedInBackground() throws InterruptedException {
+        LeaseWorkerIdStrategy s1 = new LeaseWorkerIdStrategy(coordinator, 300);
+        s1.initialize();
+        Thread.sleep(1000);
+
+        assertTrue(s1.isLeaseValid());
+        assertThat(coordinator.acquire("other", 60000), is(1L));
+        s1.release();
+    }
+
+    @Test
+    public void stolenLeaseFenced() throws InterruptedException {
+        final AtomicBoolean partitioned = new AtomicBoolean();
+        WorkerIdCoordinator flaky = new WorkerIdCoordinator() {
+            @Override
+            public long acquire(String owner, long leaseMillis) {
+                if (partitioned.get()) throw new IllegalStateException("partitioned");
+                return coordinator.acquire(owner, leaseMillis);
+            }
+
+            @Override
+            public boolean renew(String owner, long workerId, long leaseMillis) {
+                if (partitioned.get()) throw new IllegalStateException("partitioned");
+                return coordinator.renew(owner, workerId, leaseMillis);
+            }
+
+            @Override
+            public void release(String owner, long workerId) {
+                coordinator.release(owner, workerId);
+            }
+        };
+
+        LeaseWorkerIdStrategy s1 = new LeaseWorkerIdStrategy(flaky, 300);
+        IdGenerator generator = new IdGenerator.Builder().workerIdStrategy(s1).build();
+        generator.next();
+        assertThat(generator.getWorkerId(), is(0L));
+
+        // the renewals fail until the lease expires and is taken by another owner
+        partitioned.set(true);
+        Thread.sleep(400);
+        assertThat(coordinator.acquire("thief", 60000), is(0L));
+        assertThat(s1.availableWorkerId(), is(-1L));
+        try {
+            generator.next();
+            fail("no id should be issued under the stolen worker id");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // acquired again with a new worker id
+        partitioned.set(false);
+        for (int i = 0; i < 50 && !s1.isLeaseValid(); ++i) Thread.sleep(20);
+        assertThat(s1.availableWorkerId(), is(1L));
+        long id = generator.next();
+        assertThat(generator.getWorkerId(), is(1L));
+        assertThat(generator.getDecoder().workerIdOf(id), is(1L));
+        s1.release();
+    }
+}
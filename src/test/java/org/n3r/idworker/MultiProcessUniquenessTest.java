@@ -0,0 +1,37 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Run the {@link UniquenessHarness} in a small scale, and -Duniqueness.count=100000000 for the large one.
+ */
+public class MultiProcessUniquenessTest {
+
+    @Test
+    public void uniqueAcrossProcessesAndRestarts() throws Exception {
+        int count = Integer.getInteger("uniqueness.count", 20000);
+        UniquenessHarness.Report report = UniquenessHarness.run(3, 2, count, 4);
+        System.out.println(report);
+
+        for (UniquenessHarness.Kind kind : UniquenessHarness.Kind.values()) {
+            assertThat(report.values.get(kind), is(3L * 2 * count));
+            assertThat(report.duplicates.get(kind), is(0L));
+        }
+    }
+
+    @Test
+    public void offHeapLongSet() {
+        OffHeapLongSet set = new OffHeapLongSet(100000);
+        IdWorker worker = new IdWorker(1);
+        long[] ids = new long[100000];
+        worker.nextIds(ids);
+        for (long id : ids) assertThat(set.add(id), is(true));
+        for (long id : ids) assertThat(set.add(id), is(false));
+        assertThat(set.add(0), is(true));
+        assertThat(set.add(0), is(false));
+        assertThat(set.size(), is(100001L));
+    }
+}
@@ -0,0 +1,75 @@
+package org.n3r.idworker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An open addressing long hash set in the direct buffers with linear probing, for the duplicate checks
+ * over hundreds of millions of ids without boxing or heap pressure.
+ * The capacity is fixed at creation as twice the expected size, and 0 is kept aside as the empty slot marker.
+ * Not thread safe.
+ */
+public class OffHeapLongSet {
+    static final int SEGMENT_SLOT_BITS = 27; // 1 GiB a segment
+
+    private final ByteBuffer[] segments;
+    private final int segmentSlotBits;
+    private final long segmentSlotMask;
+    private final long slotMask;
+    private long size;
+    private boolean containsZero;
+
+    public OffHeapLongSet(long expectedSize) {
+        long slots = Long.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        segmentSlotBits = Math.min(SEGMENT_SLOT_BITS, Long.numberOfTrailingZeros(slots));
+        segmentSlotMask = (1L << segmentSlotBits) - 1;
+        slotMask = slots - 1;
+
+        segments = new ByteBuffer[(int) (slots >>> segmentSlotBits)];
+        for (int i = 0; i < segments.length; ++i) segments[i] = ByteBuffer.allocateDirect(8 << segmentSlotBits);
+    }
+
+    /**
+     * Add the value.
+     *
+     * @param value value
+     * @return false when the value is already in the set
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) return false;
+            containsZero = true;
+            ++size;
+            return true;
+        }
+
+        if (size >= slotMask) throw new IllegalStateException("set is full at " + size);
+
+        for (long slot = mix(value) & slotMask; ; slot = (slot + 1) & slotMask) {
+            ByteBuffer segment = segments[(int) (slot >>> segmentSlotBits)];
+            int offset = (int) (slot & segmentSlotMask) << 3;
+            long existing = segment.getLong(offset);
+            if (existing == value) return false;
+            if (existing == 0) {
+                segment.putLong(offset, value);
+                ++size;
+                return true;
+            }
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The murmur3 finalizer, which spreads the sequential ids over the slots.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
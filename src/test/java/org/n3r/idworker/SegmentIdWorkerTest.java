@@ -0,0 +1,131 @@
+package org.n3r.idworker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.server.IdWorkerServer;
+import org.n3r.idworker.strategy.HttpSegmentFetcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentIdWorkerTest {
+    File logFile;
+    IdWorkerServer server;
+    SegmentFetcher fetcher;
+
+    @Before
+    public void before() throws IOException {
+        logFile = File.createTempFile("idworker-server", ".log");
+        server = new IdWorkerServer(0, logFile).start();
+        fetcher = new HttpSegmentFetcher("http://127.0.0.1:" + server.getPort());
+    }
+
+    @After
+    public void after() {
+        server.stop();
+        logFile.delete();
+        new File(logFile.getPath() + ".segments").delete();
+    }
+
+    @Test
+    public void increasing() throws InterruptedException {
+        SegmentIdWorker worker = new SegmentIdWorker("orders", 100, 0.2, fetcher);
+        long last = 0;
+        for (int i = 0; i < 1000; ++i) {
+            long id = worker.nextId();
+            assertTrue(id > last);
+            last = id;
+            if (i % 100 == 50) Thread.sleep(50); // give the prefetch a chance
+        }
+
+        assertThat(last, is(1000L));
+        assertThat(worker.getFetchFailures(), is(0L));
+        assertTrue(worker.getFetches() >= 10);
+        assertTrue(worker.getFetchWaits() < 10); // only the first segment is waited for sure
+    }
+
+    @Test
+    public void prefetch() throws InterruptedException {
+        SegmentIdWorker worker = new SegmentIdWorker("prefetch", 10, 0.5, fetcher);
+        for (int i = 0; i < 5; ++i) worker.nextId();
+        assertThat(worker.isNextSegmentReady(), is(false));
+        assertThat(worker.getSegmentUsage(), is(0.5));
+
+        worker.nextId();
+        for (int i = 0; i < 100 && !worker.isNextSegmentReady(); ++i) Thread.sleep(10);
+        assertThat(worker.isNextSegmentReady(), is(true));
+        assertThat(worker.getFetches(), is(2L));
+    }
+
+    @Test
+    public void uniqueAcrossWorkersAndRestart() throws Exception {
+        final Set<Long> ids = java.util.Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final SegmentIdWorker worker1 = new SegmentIdWorker("shared", 500, 0.2, fetcher);
+        final SegmentIdWorker worker2 = new SegmentIdWorker("shared", 500, 0.2, fetcher);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; ++i) {
+            final SegmentIdWorker worker = i % 2 == 0 ? worker1 : worker2;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 5000; ++j) ids.add(worker.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        assertThat(ids.size(), is(40000));
+
+        server.stop();
+        server = new IdWorkerServer(0, logFile).start();
+        SegmentIdWorker worker3 = new SegmentIdWorker("shared", 500, 0.2,
+                new HttpSegmentFetcher("http://127.0.0.1:" + server.getPort()));
+        for (int j = 0; j < 1000; ++j) assertTrue(ids.add(worker3.nextId()));
+    }
+
+    @Test
+    public void failedPrefetchRetried() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+        SegmentIdWorker worker = new SegmentIdWorker("retry", 100, 0.2, new SegmentFetcher() {
+            long next = 1;
+
+            @Override
+            public synchronized long[] fetch(String name, int size) {
+                if (calls.incrementAndGet() == 2) throw new IllegalStateException("server down"); // the first prefetch
+                long start = next;
+                next += size;
+                return new long[]{start, next};
+            }
+        });
+
+        for (int i = 0; i < 30; ++i) worker.nextId();
+        for (int i = 0; i < 100 && calls.get() < 2; ++i) Thread.sleep(10);
+        assertThat(worker.isNextSegmentReady(), is(false));
+
+        Thread.sleep(SegmentIdWorker.MIN_RETRY_MILLIS + 50);
+        worker.nextId(); // retried after the backoff
+        for (int i = 0; i < 100 && !worker.isNextSegmentReady(); ++i) Thread.sleep(10);
+        assertThat(worker.isNextSegmentReady(), is(true));
+        assertThat(worker.getFetchFailures(), is(1L));
+
+        for (int i = 0; i < 100; ++i) worker.nextId();
+        assertThat(worker.getFetchWaits(), is(1L)); // only the first segment
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void prefetchRatioBelowOne() {
+        new SegmentIdWorker("ratio", 100, 1, fetcher);
+    }
+}
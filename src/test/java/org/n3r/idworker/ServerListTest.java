@@ -0,0 +1,91 @@
+package org.n3r.idworker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n3r.idworker.server.IdWorkerServer;
+import org.n3r.idworker.utils.HttpReq;
+import org.n3r.idworker.utils.ServerList;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ServerListTest {
+    File logFile;
+    IdWorkerServer server;
+
+    @Before
+    public void before() throws IOException {
+        logFile = File.createTempFile("idworker-server", ".log");
+        server = new IdWorkerServer(0, logFile).start();
+    }
+
+    @After
+    public void after() {
+        server.stop();
+        logFile.delete();
+        new File(logFile.getPath() + ".segments").delete();
+    }
+
+    @Test
+    public void orderedByHealthAndLatency() {
+        ServerList servers = new ServerList("http://a,http://b,http://c", 60000);
+        servers.record("http://a", 50, true);
+        servers.record("http://b", 5, true);
+        servers.record("http://c", 1, true);
+        for (int i = 0; i < ServerList.UNHEALTHY_ERRORS; ++i) servers.record("http://c", 1, false);
+
+        assertThat(servers.isHealthy("http://c"), is(false));
+        assertThat(servers.ordered(), is(new String[]{"http://b", "http://a", "http://c"}));
+    }
+
+    @Test
+    public void successStopsProbe() {
+        ServerList servers = new ServerList("http://a,http://b", 60000);
+        for (int i = 0; i < ServerList.UNHEALTHY_ERRORS; ++i) servers.record("http://a", 1, false);
+        assertThat(servers.isHealthy("http://a"), is(false));
+        assertThat(servers.isProbing("http://a"), is(true));
+
+        servers.record("http://a", 1, true);
+        assertThat(servers.isHealthy("http://a"), is(true));
+        assertThat(servers.isProbing("http://a"), is(false));
+
+        // unhealthy again, and probed again
+        for (int i = 0; i < ServerList.UNHEALTHY_ERRORS; ++i) servers.record("http://a", 1, false);
+        assertThat(servers.isProbing("http://a"), is(true));
+    }
+
+    @Test
+    public void failoverAndProbe() throws Exception {
+        String alive = "http://127.0.0.1:" + server.getPort();
+        ServerSocket socket = new ServerSocket(0);
+        int deadPort = socket.getLocalPort();
+        socket.close();
+        String dead = "http://127.0.0.1:" + deadPort;
+        ServerList servers = new ServerList(dead + "," + alive, 100);
+
+        for (int i = 0; i < ServerList.UNHEALTHY_ERRORS; ++i) {
+            assertThat(HttpReq.get(servers).req("/ping").retry(1, 1).exec(), is("pong"));
+        }
+        assertThat(servers.isHealthy(dead), is(false));
+        assertThat(servers.ordered()[0], is(alive));
+        assertThat(servers.getErrors(dead), is((long) ServerList.UNHEALTHY_ERRORS));
+
+        // the dead server comes back, and the prober finds it
+        File deadLog = File.createTempFile("idworker-server", ".log");
+        IdWorkerServer revived = new IdWorkerServer(deadPort, deadLog).start();
+        try {
+            for (int i = 0; i < 50 && !servers.isHealthy(dead); ++i) Thread.sleep(100);
+            assertThat(servers.isHealthy(dead), is(true));
+            assertThat(servers.isProbing(dead), is(false));
+        } finally {
+            revived.stop();
+            deadLog.delete();
+            new File(deadLog.getPath() + ".segments").delete();
+        }
+    }
+}
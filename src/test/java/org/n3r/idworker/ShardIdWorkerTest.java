@@ -0,0 +1,115 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ShardIdWorkerTest {
+
+    @Test
+    public void shardOfKey() {
+        ShardIdWorker worker = new ShardIdWorker(3, 4);
+        IdDecoder decoder = worker.decoder();
+        for (long userId = 1000; userId < 1100; ++userId) {
+            long orderId = worker.nextId(userId);
+            assertThat(worker.shardOf(orderId), is((int) (userId % 16)));
+            assertThat(ShardIdWorker.shardOf(orderId, 4), is((int) (userId & 15)));
+            assertThat(decoder.workerIdOf(orderId), is(3L));
+        }
+
+        for (int i = 0; i < 1000; ++i) assertTrue(worker.shardOf(worker.nextId()) < 16);
+    }
+
+    @Test
+    public void orderedInGene() {
+        ShardIdWorker worker = new ShardIdWorker(3, IdLayout.HIGH_SEQUENCE, 6);
+        long[] ids = new long[100000];
+        worker.nextIds(42, ids);
+        for (int i = 1; i < ids.length; ++i) {
+            assertTrue(ids[i] > ids[i - 1]);
+            assertThat(worker.shardOf(ids[i]), is(42));
+        }
+    }
+
+    @Test
+    public void uniqueAcrossGenes() throws Exception {
+        final ShardIdWorker worker = new ShardIdWorker(5, 3);
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < 8; ++t) {
+            final int key = t % 4; // two threads a gene
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int duplicates = 0;
+                    for (int i = 0; i < 20000; ++i) {
+                        if (!ids.add(worker.nextId(key))) ++duplicates;
+                        if (!ids.add(worker.nextId())) ++duplicates;
+                    }
+                    return duplicates;
+                }
+            }));
+        }
+        for (Future<Integer> future : futures) assertThat(future.get(), is(0));
+        executor.shutdown();
+        assertThat(ids.size(), is(8 * 40000));
+    }
+
+    @Test
+    public void batchOfOneGene() {
+        ShardIdWorker worker = new ShardIdWorker(3, IdLayout.HIGH_SEQUENCE, 6);
+        long[] ids = new long[1000];
+        worker.nextIds(ids);
+        for (int i = 1; i < ids.length; ++i) {
+            assertTrue(ids[i] > ids[i - 1]);
+            assertThat(worker.shardOf(ids[i]), is(worker.shardOf(ids[0])));
+        }
+    }
+
+    @Test
+    public void highWaterMarkCoversGenes() {
+        final long resumed = System.currentTimeMillis() + 50;
+        final AtomicLong persisted = new AtomicLong(resumed);
+        HighWaterMark mark = new HighWaterMark() {
+            @Override
+            public long get() {
+                return persisted.get();
+            }
+
+            @Override
+            public long advance(long millis) {
+                persisted.set(millis + 100);
+                return millis + 100;
+            }
+        };
+
+        ShardIdWorker worker = new ShardIdWorker(3, 4);
+        worker.resumeFrom(mark);
+        long id = worker.nextId(7);
+        assertTrue(worker.decoder().timestampOf(id) > resumed);
+        assertThat(worker.getLastMillis(), is(worker.decoder().timestampOf(id)));
+        assertTrue(persisted.get() > worker.getLastMillis());
+
+        for (int i = 0; i < 10000; ++i) worker.nextId(i);
+        assertTrue(persisted.get() > worker.getLastMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyGeneBits() {
+        new ShardIdWorker(1, IdLayout.DEFAULT, 11);
+    }
+}
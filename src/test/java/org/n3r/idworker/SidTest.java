@@ -2,8 +2,11 @@ package org.n3r.idworker;
 
 import org.junit.Test;
 
+import java.util.Date;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class SidTest {
     @Test
@@ -16,5 +19,18 @@ public class SidTest {
         }
     }
 
+    @Test
+    public void bounds() {
+        Date from = new Date();
+        String sid = Sid.next();
+        String shortSid = Sid.nextShort();
+        Date to = new Date();
 
+        assertThat(Sid.lowerBound(from).length(), is(21));
+        assertTrue(Sid.lowerBound(from).compareTo(sid) <= 0);
+        assertTrue(Sid.upperBound(to).compareTo(sid) >= 0);
+        assertThat(Sid.lowerBoundShort(from).length(), is(16));
+        assertTrue(Sid.lowerBoundShort(from).compareTo(shortSid) <= 0);
+        assertTrue(Sid.upperBoundShort(to).compareTo(shortSid) >= 0);
+    }
 }
@@ -0,0 +1,263 @@
+package org.n3r.idworker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The stress harness proving {@link Id}, {@link Sid}, {@link Code} and {@link DayCode} unique across threads,
+ * processes and restarts: several JVMs are forked for some rounds, sharing the ~/.idworkers of a temp user.home,
+ * and each generates the values at full speed from several threads into the binary files.
+ * The values of all the processes and rounds are merged into an {@link OffHeapLongSet} to count the duplicates.
+ * <p>
+ * The worker id server in the test idworker-client.properties is a local port, so it runs without network.
+ * <pre>
+ * java -cp target/classes:target/test-classes:... org.n3r.idworker.UniquenessHarness 8 2 10000000 4
+ * </pre>
+ */
+public class UniquenessHarness {
+    enum Kind {ID, SID, CODE, DAY_CODE}
+
+    static final String RESULT = "RESULT ";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 5 && "child".equals(args[0])) {
+            child(new File(args[1]), args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            System.exit(0);
+        }
+
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        Report report = run(processes, rounds, count, threads);
+        System.out.println(report);
+        System.exit(report.totalDuplicates() == 0 ? 0 : 1);
+    }
+
+    /**
+     * The result of the run.
+     */
+    static class Report {
+        final Map<Kind, Long> values = new LinkedHashMap<Kind, Long>();
+        final Map<Kind, Long> duplicates = new LinkedHashMap<Kind, Long>();
+        final List<String> throughputs = new ArrayList<String>();
+
+        long totalDuplicates() {
+            long total = 0;
+            for (long d : duplicates.values()) total += d;
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (String throughput : throughputs) sb.append(throughput).append('\n');
+            for (Kind kind : values.keySet())
+                sb.append(kind).append(": ").append(values.get(kind)).append(" values, ")
+                        .append(duplicates.get(kind)).append(" duplicates\n");
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Fork the processes for the rounds, and merge their values.
+     *
+     * @param processes processes of a round, running at the same time
+     * @param rounds    rounds of the processes, the later ones restarting on the same ~/.idworkers
+     * @param count     values of each kind generated by a process
+     * @param threads   generating threads in a process
+     * @return report
+     */
+    static Report run(int processes, int rounds, int count, int threads) throws IOException, InterruptedException {
+        File home = File.createTempFile("idworker-harness", "");
+        home.delete();
+        home.mkdirs();
+
+        Report report = new Report();
+        try {
+            for (int round = 0; round < rounds; ++round) {
+                List<Process> forked = new ArrayList<Process>();
+                List<File> outputs = new ArrayList<File>();
+                for (int p = 0; p < processes; ++p) {
+                    File output = new File(home, "out." + round + "." + p);
+                    ProcessBuilder builder = new ProcessBuilder(
+                            new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                            "-Duser.home=" + home.getAbsolutePath(),
+                            "-cp", System.getProperty("java.class.path"),
+                            UniquenessHarness.class.getName(),
+                            "child", home.getAbsolutePath(), round + "." + p, "" + count, "" + threads);
+                    builder.redirectErrorStream(true);
+                    builder.redirectOutput(output);
+                    forked.add(builder.start());
+                    outputs.add(output);
+                }
+
+                for (int p = 0; p < processes; ++p) {
+                    int exit = forked.get(p).waitFor();
+                    if (exit != 0) throw new IllegalStateException("process " + round + "." + p + " exits " + exit);
+
+                    readThroughputs(outputs.get(p), round + "." + p, report);
+                }
+            }
+
+            for (Kind kind : Kind.values()) {
+                OffHeapLongSet set = new OffHeapLongSet((long) processes * rounds * count);
+                long total = 0, duplicates = 0;
+                for (int round = 0; round < rounds; ++round) {
+                    for (int p = 0; p < processes; ++p) {
+                        File file = new File(home, kind + "." + round + "." + p);
+                        for (long value : readValues(file)) {
+                            ++total;
+                            if (!set.add(value)) ++duplicates;
+                        }
+                    }
+                }
+                report.values.put(kind, total);
+                report.duplicates.put(kind, duplicates);
+            }
+        } finally {
+            deleteRecursively(home);
+        }
+
+        return report;
+    }
+
+    static void child(File dir, String name, int count, int threads) throws Exception {
+        for (Kind kind : Kind.values()) next(kind); // initialize the worker id and the prefixes out of the timing
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (final Kind kind : Kind.values()) {
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+            for (int t = 0; t < threads; ++t) {
+                final int size = count / threads + (t < count % threads ? 1 : 0);
+                futures.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        long[] values = new long[size];
+                        for (int i = 0; i < size; ++i) values[i] = next(kind);
+                        return values;
+                    }
+                }));
+            }
+
+            List<long[]> results = new ArrayList<long[]>();
+            for (Future<long[]> future : futures) results.add(future.get());
+            long nanos = System.nanoTime() - start;
+
+            writeValues(new File(dir, kind + "." + name), results);
+            System.out.println(RESULT + kind + " " + count + " " + nanos + " " + Id.getWorkerId());
+        }
+        executor.shutdown();
+    }
+
+    static long next(Kind kind) {
+        switch (kind) {
+            case ID:
+                return Id.next();
+            case SID:
+                return packSid(Sid.next());
+            case CODE:
+                return packCode(Code.next());
+            default:
+                return packCode(DayCode.next());
+        }
+    }
+
+    /**
+     * Pack the 21 digits yyMMdd + 15 digits Sid into a long, with the day in the high 16 bits.
+     */
+    static long packSid(String sid) {
+        long day = digits(sid, 0, 2) * 372 + (digits(sid, 2, 4) - 1) * 31 + digits(sid, 4, 6) - 1;
+        return day << 48 | digits(sid, 6, 21);
+    }
+
+    /**
+     * Pack the code like 12-003-000123 into a long as worker id, prefix and random code.
+     */
+    static long packCode(String code) {
+        int first = code.indexOf('-'), second = code.indexOf('-', first + 1);
+        return digits(code, 0, first) << 48 | digits(code, first + 1, second) << 32 | digits(code, second + 1, code.length());
+    }
+
+    private static long digits(String s, int start, int end) {
+        long num = 0;
+        for (int i = start; i < end; ++i) num = num * 10 + (s.charAt(i) - '0');
+        return num;
+    }
+
+    private static void writeValues(File file, List<long[]> results) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            for (long[] values : results) {
+                for (long value : values) {
+                    if (!buffer.hasRemaining()) flush(buffer, channel);
+                    buffer.putLong(value);
+                }
+            }
+            flush(buffer, channel);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static long[] readValues(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            buffer.flip();
+
+            long[] values = new long[buffer.remaining() / 8];
+            buffer.asLongBuffer().get(values);
+            return values;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void readThroughputs(File output, String name, Report report) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(output));
+        try {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (!line.startsWith(RESULT)) continue;
+
+                String[] parts = line.substring(RESULT.length()).split(" ");
+                long count = Long.parseLong(parts[1]), nanos = Long.parseLong(parts[2]);
+                report.throughputs.add(String.format("process %s worker %s %s: %d/s",
+                        name, parts[3], parts[0], count * 1000000000L / Math.max(1, nanos)));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteRecursively(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,152 @@
+package org.n3r.idworker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Generate ids, segment ids and codes from 10k threads at once, which are the virtual threads when the JDK has them,
+ * and check no virtual thread is pinned to its carrier by a monitor, by the jdk.tracePinnedThreads output.
+ * On JDK 17 and before, the platform threads are used and the pinning check is skipped.
+ */
+public class VirtualThreadsTest {
+    static final int THREADS = 10000;
+    static final int IDS_PER_THREAD = 20;
+    static final String PINNED_BY_MONITOR = "<== monitors";
+
+    static {
+        // read by the JDK when the first virtual thread is created
+        System.setProperty("jdk.tracePinnedThreads", "short");
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            System.out.println("no virtual threads, use 256 platform threads");
+            return Executors.newFixedThreadPool(256);
+        }
+    }
+
+    /**
+     * An in-memory fetcher taking 1 ms a fetch like a fast server, without a monitor of its own.
+     */
+    static SegmentFetcher slowFetcher() {
+        return new SegmentFetcher() {
+            final AtomicLong next = new AtomicLong(1);
+
+            @Override
+            public long[] fetch(String name, int size) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                long start = next.getAndAdd(size);
+                return new long[]{start, start + size};
+            }
+        };
+    }
+
+    @Test
+    public void benchmark() throws InterruptedException {
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final Set<String> sids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Set<Long> segmentIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final Set<String> codes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        final SegmentIdWorker segmentWorker = new SegmentIdWorker("virtual", 1000, 0.2, slowFetcher());
+
+        // initialize the worker id and the prefixes out of the virtual threads
+        Id.next();
+        Sid.nextShort();
+        Code.next();
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream traced = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(tee(out, traced), true));
+        long millis;
+        try {
+            ExecutorService executor = newExecutor();
+            long start = System.nanoTime();
+            for (int i = 0; i < THREADS; ++i) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < IDS_PER_THREAD; ++j) {
+                                ids.add(Id.next());
+                                sids.add(Sid.nextShort());
+                                segmentIds.add(segmentWorker.nextId());
+                            }
+                            codes.add(Code.next());
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            assertTrue(latch.await(2, TimeUnit.MINUTES));
+            millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            executor.shutdown();
+        } finally {
+            System.setOut(out);
+        }
+
+        System.out.println(String.format("%d threads generated %d ids, %d sids, %d segment ids and %d codes in %d ms",
+                THREADS, ids.size(), sids.size(), segmentIds.size(), codes.size(), millis));
+        assertThat(ids.size(), is(THREADS * IDS_PER_THREAD));
+        assertThat(sids.size(), is(THREADS * IDS_PER_THREAD));
+        assertThat(segmentIds.size(), is(THREADS * IDS_PER_THREAD));
+        assertThat(codes.size(), is(THREADS));
+        if (hasVirtualThreads()) assertFalse(traced.toString(), traced.toString().contains(PINNED_BY_MONITOR));
+    }
+
+    static OutputStream tee(final OutputStream first, final OutputStream second) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                first.write(b);
+                second.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                first.write(b, off, len);
+                second.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                first.flush();
+                second.flush();
+            }
+        };
+    }
+}